@@ -44,4 +44,21 @@ public class AttestationHubConfigUtil {
         return loadedConfiguration.get(key, defaultValue);
     }
 
+    public static int getPositiveInt(String key, int defaultValue) {
+        String value = get(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            int intValue = Integer.parseInt(value.trim());
+            if (intValue > 0) {
+                return intValue;
+            }
+        } catch (NumberFormatException e) {
+            log.debug("Unable to parse {}", key, e);
+        }
+        log.error("Invalid value configured for {}: {}. Defaulting to {}", key, value, defaultValue);
+        return defaultValue;
+    }
+
 }
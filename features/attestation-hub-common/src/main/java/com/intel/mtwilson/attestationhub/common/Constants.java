@@ -14,6 +14,11 @@ public class Constants {
     public static final String ATTESTATION_HUB_DB_PASSWORD = "attestation-hub.db.password";
     public static final String ATTESTATION_HUB_DB_SSLMODE = "attestation-hub.db.sslmode";
     public static final String ATTESTATION_HUB_DB_SSLROOTCERT = "attestation-hub.db.sslrootcert";
+    public static final String ATTESTATION_HUB_DB_POOL_MIN_SIZE = "attestation-hub.db.pool.min.size";
+    public static final String ATTESTATION_HUB_DB_POOL_MAX_SIZE = "attestation-hub.db.pool.max.size";
+    public static final String ATTESTATION_HUB_DB_POOL_IDLE_TIMEOUT = "attestation-hub.db.pool.idle.timeout";
+    public static final String ATTESTATION_HUB_DB_POOL_LEAK_DETECTION_THRESHOLD = "attestation-hub.db.pool.leak.detection.threshold";
+    public static final String ATTESTATION_HUB_DB_BATCH_SIZE = "attestation-hub.db.batch.size";
     public static final String ATTESTATION_HUB_DATA_ENCRYPTION_KEY = "attestation-hub.dek";
     public static final String ATTESTATION_HUB_SERVICE_USERNAME = "ah.service.username";
     public static final String ATTESTATION_HUB_SERVICE_PASSWORD = "ah.service.password";
@@ -22,9 +27,22 @@ public class Constants {
     public final static String BEARER_TOKEN = "bearer.token";
     public final static String TRUSTSTORE_PASSWORD = "changeit";
     public final static String AAS_API_URL = "aas.api.url";
+    public static final String AAS_TOKEN_REFRESH_MARGIN_SECONDS = "aas.token.refresh.margin.seconds";
     public static final String MTWILSON_API_URL = "mtwilson.api.url";
     public static final String ATTESTATION_HUB_POLL_INTERVAL = "attestation-hub.poll.interval";
     public static final String ATTESTATION_HUB_SAML_TIMEOUT = "attestation-hub.saml.timeout";
+    public static final String ATTESTATION_HUB_BULK_FETCH_ENABLED = "attestation-hub.poll.bulk.fetch.enabled";
+    public static final String ATTESTATION_HUB_BULK_FETCH_PAGE_SIZE = "attestation-hub.poll.bulk.fetch.page.size";
+    public static final String ATTESTATION_HUB_FETCH_THREADS = "attestation-hub.poll.fetch.threads";
+    public static final String ATTESTATION_HUB_FETCH_MAX_IN_FLIGHT = "attestation-hub.poll.fetch.max.inflight";
+    public static final String ATTESTATION_HUB_PIPELINE_QUEUE_SIZE = "attestation-hub.poll.pipeline.queue.size";
+    public static final String ATTESTATION_HUB_PIPELINE_VERIFY_THREADS = "attestation-hub.poll.pipeline.verify.threads";
+    public static final String ATTESTATION_HUB_PIPELINE_PERSIST_CHUNK_SIZE = "attestation-hub.poll.pipeline.persist.chunk.size";
+    public static final String ATTESTATION_HUB_PUBLISH_TENANT_THREADS = "attestation-hub.publish.tenant.threads";
+    public static final String ATTESTATION_HUB_PUBLISH_MAX_CONCURRENT_PER_PLUGIN = "attestation-hub.publish.plugin.max.concurrent";
+    public static final String ATTESTATION_HUB_PUBLISH_TIMEOUT_SECONDS = "attestation-hub.publish.timeout.seconds";
+    public static final String ATTESTATION_HUB_PUBLISH_INCREMENTAL_ENABLED = "attestation-hub.publish.incremental.enabled";
+    public static final String ATTESTATION_HUB_PUBLISH_FULL_SYNC_INTERVAL_MINUTES = "attestation-hub.publish.full.sync.interval.minutes";
     public static final String CREATE = "create";
     public static final String UPDATE = "update";
     public static final String PUBLIC_KEY_FILE = "hub_public_key.pem";
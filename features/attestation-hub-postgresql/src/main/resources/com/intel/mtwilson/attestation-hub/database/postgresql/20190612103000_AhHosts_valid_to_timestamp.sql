@@ -0,0 +1,13 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+/**
+ * Author:
+ * Created: Jun 12, 2019
+ */
+
+
+ALTER TABLE AH_HOST ALTER COLUMN VALID_TO TYPE TIMESTAMP WITH TIME ZONE USING NULLIF(TRIM(VALID_TO), '')::TIMESTAMP WITH TIME ZONE;
+CREATE INDEX IF NOT EXISTS IDX_AH_HOST_VALID_TO ON AH_HOST (VALID_TO);
+INSERT INTO changelog (ID, APPLIED_AT, DESCRIPTION) VALUES (20190612103000,NOW(),'Changed VALID_TO column to timestamp and indexed it');
\ No newline at end of file
@@ -0,0 +1,15 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+/**
+ * Author:
+ * Created: Jun 12, 2019
+ */
+
+
+CREATE INDEX IF NOT EXISTS IDX_AH_HOST_UPPER_HARDWARE_UUID ON AH_HOST (UPPER(HARDWARE_UUID));
+CREATE INDEX IF NOT EXISTS IDX_AH_HOST_UPPER_HOST_NAME ON AH_HOST (UPPER(HOST_NAME));
+CREATE INDEX IF NOT EXISTS IDX_AH_HOST_DELETED ON AH_HOST (DELETED);
+CREATE INDEX IF NOT EXISTS IDX_AH_MAPPING_HOST_HARDWARE_UUID ON AH_MAPPING (HOST_HARDWARE_UUID);
+INSERT INTO changelog (ID, APPLIED_AT, DESCRIPTION) VALUES (20190612110000,NOW(),'Added indexes for AH_HOST hardware uuid, host name and deleted lookups');
\ No newline at end of file
@@ -0,0 +1,13 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+/**
+ * Author:
+ * Created: Jun 14, 2019
+ */
+
+
+ALTER TABLE AH_HOST ADD COLUMN SAML_ISSUE_DATE TIMESTAMP WITH TIME ZONE DEFAULT NULL;
+ALTER TABLE AH_HOST ADD COLUMN SAML_HASH VARCHAR(64) DEFAULT NULL;
+INSERT INTO changelog (ID, APPLIED_AT, DESCRIPTION) VALUES (20190614093000,NOW(),'Inserted SAML_ISSUE_DATE and SAML_HASH columns');
\ No newline at end of file
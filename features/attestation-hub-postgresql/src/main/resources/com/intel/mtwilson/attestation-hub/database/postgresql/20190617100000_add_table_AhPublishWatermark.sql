@@ -0,0 +1,24 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+/**
+ * Author:
+ * Created: Jun 17, 2019
+ */
+
+
+CREATE  TABLE ah_publish_watermark (
+  id CHAR(36) NOT NULL,
+  tenant_id VARCHAR(36) NOT NULL,
+  plugin_name VARCHAR(255) NOT NULL,
+  digest VARCHAR(64),
+  host_digests TEXT DEFAULT NULL ,
+  published_ts TIMESTAMP WITH TIME ZONE NULL,
+  full_sync_ts TIMESTAMP WITH TIME ZONE NULL,
+  PRIMARY KEY (id)
+);
+
+CREATE UNIQUE INDEX idx_publish_watermark_tenant_plugin ON ah_publish_watermark (tenant_id ASC, plugin_name ASC);
+
+INSERT INTO changelog (ID, APPLIED_AT, DESCRIPTION) VALUES (20190617100000,NOW(),'added table ah_publish_watermark for publishing only changed host data to plugins');
\ No newline at end of file
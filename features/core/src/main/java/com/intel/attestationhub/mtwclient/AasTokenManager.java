@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.attestationhub.mtwclient;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.intel.mtwilson.attestationhub.exception.AttestationHubException;
+
+/**
+ * Keeps the AAS bearer token of the hub current. The expiry is read from the
+ * exp claim of the token and a new token is fetched in the background a
+ * configurable margin before it lapses. Refreshes requested concurrently,
+ * e.g. by several fetch workers receiving a 401 at once, result in a single
+ * call to AAS, whether it succeeds or fails. At most one background refresh
+ * is pending at any time.
+ */
+class AasTokenManager {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(AasTokenManager.class);
+    // used when the token does not carry an exp claim
+    private static final long DEFAULT_TOKEN_LIFETIME_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    private static final long MIN_REFRESH_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final long MIN_REFRESH_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    interface TokenFetcher {
+        String fetchToken() throws Exception;
+    }
+
+    interface TokenListener {
+        void tokenRefreshed(String token);
+    }
+
+    private final TokenFetcher tokenFetcher;
+    private final TokenListener tokenListener;
+    private final long refreshMarginMillis;
+    private final AtomicReference<Token> currentToken = new AtomicReference<>();
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    // outcome of the last call to AAS, guarded by refreshLock
+    private long lastAttemptAt;
+    private Exception lastFailure;
+    private ScheduledFuture<?> pendingRefresh;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "aas-token-refresh");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    AasTokenManager(TokenFetcher tokenFetcher, TokenListener tokenListener, long refreshMarginSeconds) {
+        this.tokenFetcher = tokenFetcher;
+        this.tokenListener = tokenListener;
+        this.refreshMarginMillis = TimeUnit.SECONDS.toMillis(refreshMarginSeconds);
+    }
+
+    /**
+     * @return the current token, fetching one first if there is none or it
+     *         has expired
+     */
+    String getToken() throws AttestationHubException {
+        Token token = currentToken.get();
+        if (token == null || token.isExpired()) {
+            return refresh();
+        }
+        return token.value;
+    }
+
+    /**
+     * Fetches a new token. If another thread refreshed the token while this
+     * one waited for the lock, or a token was fetched only a moment ago, that
+     * token is returned instead of calling AAS again. Likewise, if the call
+     * made by another thread while this one waited, or a moment ago, failed,
+     * its failure is thrown.
+     */
+    String refresh() throws AttestationHubException {
+        Token before = currentToken.get();
+        long requestedAt = System.currentTimeMillis();
+        refreshLock.lock();
+        try {
+            Token token = currentToken.get();
+            if (token != null && (token != before || token.fetchedWithin(MIN_REFRESH_INTERVAL_MILLIS))) {
+                return token.value;
+            }
+            if (lastFailure != null && (lastAttemptAt >= requestedAt
+                    || System.currentTimeMillis() - lastAttemptAt < MIN_REFRESH_INTERVAL_MILLIS)) {
+                throw new AttestationHubException("Cannot fetch token from AAS: ", lastFailure);
+            }
+            String value;
+            try {
+                value = tokenFetcher.fetchToken();
+            } catch (Exception e) {
+                log.error("Cannot fetch token from AAS: ", e);
+                lastAttemptAt = System.currentTimeMillis();
+                lastFailure = e;
+                scheduleRefresh(MIN_REFRESH_DELAY_MILLIS);
+                throw new AttestationHubException("Cannot fetch token from AAS: ", e);
+            }
+            lastAttemptAt = System.currentTimeMillis();
+            lastFailure = null;
+            token = new Token(value, getExpiry(value));
+            currentToken.set(token);
+            tokenListener.tokenRefreshed(value);
+            scheduleRefresh(token.expiresAt - refreshMarginMillis - System.currentTimeMillis());
+            log.info("Fetched a new token from AAS valid until {}", new Date(token.expiresAt));
+            return value;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Schedules the next background refresh, replacing the pending one.
+     * Called with refreshLock held.
+     */
+    private void scheduleRefresh(long delayMillis) {
+        if (pendingRefresh != null) {
+            // does not interrupt the refresh that is running and scheduling its successor
+            pendingRefresh.cancel(false);
+        }
+        pendingRefresh = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                Token token = currentToken.get();
+                if (token != null && token.expiresAt - refreshMarginMillis > System.currentTimeMillis()) {
+                    // refreshed in the meantime, that refresh replaced this run
+                    return;
+                }
+                try {
+                    refresh();
+                } catch (AttestationHubException e) {
+                    log.error("Background refresh of the AAS token failed", e);
+                }
+            }
+        }, Math.max(delayMillis, MIN_REFRESH_DELAY_MILLIS), TimeUnit.MILLISECONDS);
+    }
+
+    private static long getExpiry(String token) {
+        long fetchedAt = System.currentTimeMillis();
+        String[] parts = token == null ? new String[0] : token.split("\\.");
+        if (parts.length >= 2) {
+            try {
+                byte[] claims = Base64.getUrlDecoder().decode(parts[1]);
+                JsonNode exp = new ObjectMapper().readTree(new String(claims, StandardCharsets.UTF_8)).get("exp");
+                if (exp != null && exp.canConvertToLong()) {
+                    return TimeUnit.SECONDS.toMillis(exp.asLong());
+                }
+            } catch (Exception e) {
+                log.debug("Unable to read the expiry of the AAS token", e);
+            }
+        }
+        log.warn("AAS token does not carry an expiry, assuming it is valid for {} minutes",
+                TimeUnit.MILLISECONDS.toMinutes(DEFAULT_TOKEN_LIFETIME_MILLIS));
+        return fetchedAt + DEFAULT_TOKEN_LIFETIME_MILLIS;
+    }
+
+    private static class Token {
+        private final String value;
+        private final long expiresAt;
+        private final long fetchedAt = System.currentTimeMillis();
+
+        private Token(String value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+
+        private boolean fetchedWithin(long millis) {
+            return System.currentTimeMillis() - fetchedAt < millis;
+        }
+    }
+}
@@ -6,6 +6,7 @@
 package com.intel.attestationhub.mtwclient;
 
 import com.intel.attestationhub.api.MWHost;
+import com.intel.attestationhub.mapper.HostMapper;
 import com.intel.dcsg.cpg.extensions.Extensions;
 import com.intel.dcsg.cpg.tls.policy.TlsConnection;
 import com.intel.dcsg.cpg.tls.policy.TlsPolicy;
@@ -22,7 +23,6 @@ import com.intel.mtwilson.flavor.client.jaxrs.Hosts;
 import com.intel.mtwilson.attestationhub.common.AttestationHubConfigUtil;
 import com.intel.mtwilson.attestationhub.common.Constants;
 import com.intel.mtwilson.attestationhub.controller.AhHostJpaController;
-import com.intel.mtwilson.attestationhub.controller.exceptions.NonexistentEntityException;
 import com.intel.mtwilson.attestationhub.data.AhHost;
 import com.intel.mtwilson.attestationhub.exception.AttestationHubException;
 import com.intel.mtwilson.attestationhub.service.PersistenceServiceFactory;
@@ -45,11 +45,13 @@ import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.UnrecoverableEntryException;
 import java.security.cert.CertificateEncodingException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.intel.mtwilson.attestationhub.common.Constants.TRUSTSTORE_PASSWORD;
 
@@ -60,7 +62,26 @@ public class AttestationServiceClient {
     private static Properties mtwProperties = new Properties();
     private static Properties mtwPropertiesForverification = new Properties();
     private static AttestationServiceClient attestationServiceClient = null;
-    private static String aasBearerToken;
+    private static final int DEFAULT_TOKEN_REFRESH_MARGIN_SECONDS = 300;
+    private final AasTokenManager tokenManager = new AasTokenManager(new AasTokenManager.TokenFetcher() {
+        @Override
+        public String fetchToken() throws Exception {
+            return fetchAasToken();
+        }
+    }, new AasTokenManager.TokenListener() {
+        @Override
+        public void tokenRefreshed(String token) {
+            applyToken(token);
+        }
+    }, AttestationHubConfigUtil.getPositiveInt(Constants.AAS_TOKEN_REFRESH_MARGIN_SECONDS,
+            DEFAULT_TOKEN_REFRESH_MARGIN_SECONDS));
+    // the clients carry the bearer token, they are dropped whenever it changes
+    private Reports reportsClient;
+    private Hosts hostsClient;
+    private Reports verificationReportsClient;
+    // hosts whose SAML reports are correlated per batch in a bulk fetch
+    private static final int DEFAULT_BULK_FETCH_PAGE_SIZE = 500;
+    private static final int DEFAULT_FETCH_THREADS = 8;
 
 
     private AttestationServiceClient() throws AttestationHubException {
@@ -77,50 +98,196 @@ public class AttestationServiceClient {
     }
 
     public Map<String, MWHost> fetchHostAttestations(List<Host> hosts) throws AttestationHubException {
+        if (hosts == null || hosts.size() == 0) {
+            log.info("No hosts passed to the method to fetch the attestations");
+            return null;
+        }
+        Map<String, MWHost> hostIdToMwHostMap = new ConcurrentHashMap<>(hosts.size());
+        fetchHostAttestations(hosts, new VerifyingMapSink(hostIdToMwHostMap));
+        log.info("Returning the hosts and host attestations");
+        return hostIdToMwHostMap;
+    }
+
+    /**
+     * Fetches the attestations of the given hosts and hands each of them,
+     * unverified, to the sink as soon as it is retrieved. The sink is called
+     * concurrently from the fetch workers.
+     *
+     * @return false if there was nothing to fetch
+     */
+    public boolean fetchHostAttestations(List<Host> hosts, final HostAttestationSink sink)
+            throws AttestationHubException {
         if (mtwProperties == null) {
             throw new AttestationHubException("Configuration parameters for MTW client are not initialized");
         }
 
         if (hosts == null || hosts.size() == 0) {
             log.info("No hosts passed to the method to fetch the attestations");
-            return null;
+            return false;
         }
         log.info("Fetching host attestations");
-        Map<String, MWHost> hostIdToMwHostMap = new HashMap<>(hosts.size());
-        Reports hostReports = MtwClientFactory.getHostReports(mtwProperties);
-
-        for (Host host : hosts) {
-            String hostId = host.getId().toString();
-            log.info("Retrieving attestation for host: {}", hostId);
-            ReportFilterCriteria criteria = new ReportFilterCriteria();
-            criteria.hostName = host.getHostName();
-            criteria.limit = 1;
-            ReportCollection searchHostReports;
-            String saml;
+
+        if (isBulkFetchEnabled()) {
             try {
-                searchHostReports = hostReports.search(criteria);
-                saml = hostReports.searchSamlReports(criteria);
-            } catch (Exception e) {
-                log.error("Unable to get host attestations or saml report for host with ID={} and name={}", host.getId().toString(),
-                        host.getHostName(), e);
-                if (e instanceof NotAuthorizedException) {
-                    updateTokenCache();
-                    throw new AttestationHubException("Not authorized to connect to attestation service", e);
+                fetchHostAttestationsInBulk(hosts, sink);
+                return true;
+            } catch (BulkFetchUnavailableException e) {
+                log.warn("Bulk fetch of host attestations failed, falling back to fetching per host", e);
+            }
+        }
+
+        createParallelFetcher().run(hosts, new ParallelFetcher.FetchTask<Host>() {
+            @Override
+            public void fetch(Host host) throws AttestationHubException {
+                fetchHostAttestation(host, sink);
+            }
+        });
+        return true;
+    }
+
+    private void fetchHostAttestation(Host host, HostAttestationSink sink)
+            throws AttestationHubException {
+        Reports hostReports = getReportsClient();
+        String hostId = host.getId().toString();
+        log.info("Retrieving attestation for host: {}", hostId);
+        ReportFilterCriteria criteria = new ReportFilterCriteria();
+        criteria.hostName = host.getHostName();
+        criteria.limit = 1;
+        ReportCollection searchHostReports;
+        String saml;
+        try {
+            searchHostReports = hostReports.search(criteria);
+            saml = hostReports.searchSamlReports(criteria);
+        } catch (Exception e) {
+            log.error("Unable to get host attestations or saml report for host with ID={} and name={}", host.getId().toString(),
+                    host.getHostName(), e);
+            handleAttestationServiceError(e);
+            return;
+        }
+        if (searchHostReports != null && searchHostReports.getReports() != null
+                && searchHostReports.getReports().size() > 0) {
+            Report hostReport = searchHostReports.getReports().get(0);
+            sink.accept(createMwHost(host, hostReport, saml));
+        }
+    }
+
+    /**
+     * Fetches the latest report of every host with a single latestPerHost
+     * search instead of one search per host. The report search cannot be
+     * paged or scoped to a set of host ids, so the whole response is held in
+     * memory for the duration of the fetch. The hosts are then correlated one
+     * page at a time: the SAML of each reported host of the page is retrieved
+     * and verified before moving to the next page. The page size only sets
+     * the size of these SAML batches, it does not bound memory. Hosts without
+     * a report do not cost a SAML round trip.
+     */
+    private void fetchHostAttestationsInBulk(List<Host> hosts, final HostAttestationSink sink)
+            throws AttestationHubException, BulkFetchUnavailableException {
+        int pageSize = getBulkFetchPageSize();
+        ReportFilterCriteria criteria = new ReportFilterCriteria();
+        criteria.latestPerHost = "true";
+        criteria.limit = Math.max(hosts.size(), pageSize);
+        ReportCollection reportCollection;
+        try {
+            reportCollection = getReportsClient().search(criteria);
+        } catch (Exception e) {
+            log.error("Unable to get the latest host attestations in bulk", e);
+            handleAttestationServiceError(e);
+            throw new BulkFetchUnavailableException(e);
+        }
+
+        Map<String, Report> hostIdToReportMap = new HashMap<>();
+        if (reportCollection != null && reportCollection.getReports() != null) {
+            for (Report report : reportCollection.getReports()) {
+                if (report.getHostId() != null) {
+                    hostIdToReportMap.put(report.getHostId().toString(), report);
                 }
-                if (e instanceof ProcessingException) {
-                    throw new AttestationHubException("Cannot connect to attestation service" + e);
+            }
+        }
+        log.info("Bulk search returned reports for {} of {} hosts", hostIdToReportMap.size(), hosts.size());
+
+        ParallelFetcher parallelFetcher = createParallelFetcher();
+        for (int pageStart = 0; pageStart < hosts.size(); pageStart += pageSize) {
+            List<Host> page = hosts.subList(pageStart, Math.min(pageStart + pageSize, hosts.size()));
+            log.debug("Correlating saml reports for hosts {} to {}", pageStart, pageStart + page.size());
+            final Map<String, Report> pageReports = new HashMap<>();
+            List<Host> reportedHosts = new ArrayList<>(page.size());
+            for (Host host : page) {
+                String hostId = host.getId().toString();
+                Report hostReport = hostIdToReportMap.remove(hostId);
+                if (hostReport == null) {
+                    log.debug("No attestation report available for host: {}", hostId);
+                    continue;
                 }
-                continue;
+                pageReports.put(hostId, hostReport);
+                reportedHosts.add(host);
             }
-            if (searchHostReports != null && searchHostReports.getReports() != null
-                    && searchHostReports.getReports().size() > 0) {
-                Report hostReport = searchHostReports.getReports().get(0);
-                populateMwHost(host, hostReport, hostIdToMwHostMap, saml);
+            parallelFetcher.run(reportedHosts, new ParallelFetcher.FetchTask<Host>() {
+                @Override
+                public void fetch(Host host) throws AttestationHubException {
+                    correlateSamlReport(host, pageReports.get(host.getId().toString()), sink);
+                }
+            });
+        }
+    }
+
+    private void correlateSamlReport(Host host, Report hostReport, HostAttestationSink sink)
+            throws AttestationHubException {
+        String hostId = host.getId().toString();
+        String saml = hostReport.getSaml();
+        if (StringUtils.isBlank(saml)) {
+            ReportFilterCriteria samlCriteria = new ReportFilterCriteria();
+            samlCriteria.hostId = hostId;
+            samlCriteria.latestPerHost = "true";
+            samlCriteria.limit = 1;
+            try {
+                saml = getReportsClient().searchSamlReports(samlCriteria);
+            } catch (Exception e) {
+                log.error("Unable to get saml report for host with ID={} and name={}", hostId,
+                        host.getHostName(), e);
+                handleAttestationServiceError(e);
+                return;
             }
         }
+        if (StringUtils.isNotBlank(saml)) {
+            sink.accept(createMwHost(host, hostReport, saml));
+        }
+    }
 
-        log.info("Returning the hosts and host attestations");
-        return hostIdToMwHostMap;
+    private ParallelFetcher createParallelFetcher() {
+        int workers = AttestationHubConfigUtil.getPositiveInt(Constants.ATTESTATION_HUB_FETCH_THREADS, DEFAULT_FETCH_THREADS);
+        int maxInFlight = AttestationHubConfigUtil.getPositiveInt(Constants.ATTESTATION_HUB_FETCH_MAX_IN_FLIGHT, workers * 2);
+        return new ParallelFetcher(workers, maxInFlight);
+    }
+
+    private boolean isBulkFetchEnabled() {
+        return Boolean.valueOf(AttestationHubConfigUtil.get(Constants.ATTESTATION_HUB_BULK_FETCH_ENABLED, "true"));
+    }
+
+    private int getBulkFetchPageSize() {
+        return AttestationHubConfigUtil.getPositiveInt(Constants.ATTESTATION_HUB_BULK_FETCH_PAGE_SIZE, DEFAULT_BULK_FETCH_PAGE_SIZE);
+    }
+
+    /**
+     * Auth and connection failures abort the whole fetch. Any other error is
+     * left to the caller to handle.
+     */
+    private void handleAttestationServiceError(Exception e) throws AttestationHubException {
+        if (e instanceof NotAuthorizedException) {
+            updateTokenCache();
+            throw new AttestationHubException("Not authorized to connect to attestation service", e);
+        }
+        if (e instanceof ProcessingException) {
+            throw new AttestationHubException("Cannot connect to attestation service" + e);
+        }
+    }
+
+    private static class BulkFetchUnavailableException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        BulkFetchUnavailableException(Throwable cause) {
+            super(cause);
+        }
     }
 
     public List<Host> fetchHosts() throws AttestationHubException {
@@ -129,7 +296,7 @@ public class AttestationServiceClient {
         }
         log.info("Fetching ALL hosts from Attestation Service");
         List<Host> hosts = null;
-        Hosts hostsService = MtwClientFactory.getHostsClient(mtwProperties);
+        Hosts hostsService = getHostsClient();
         HostFilterCriteria criteria = new HostFilterCriteria();
         criteria.filter = false;
         HostCollection objCollection = null;
@@ -156,108 +323,120 @@ public class AttestationServiceClient {
 
     public Map<String, MWHost> fetchHostAttestations(String lastDateTimeFromLastRunFile)
             throws AttestationHubException {
+        Map<String, MWHost> hostIdToMwHostMap = new ConcurrentHashMap<>();
+        if (!fetchHostAttestations(lastDateTimeFromLastRunFile, new VerifyingMapSink(hostIdToMwHostMap))) {
+            return null;
+        }
+        log.info("Returning the hosts and host attestations returned from MTW : {}", hostIdToMwHostMap.size());
+        return hostIdToMwHostMap;
+    }
+
+    /**
+     * Fetches the attestations created since the given time and hands each of
+     * them, unverified, to the sink as soon as it is retrieved. The sink is
+     * called concurrently from the fetch workers.
+     *
+     * @return false if the attestations could not be searched
+     */
+    public boolean fetchHostAttestations(String lastDateTimeFromLastRunFile, final HostAttestationSink sink)
+            throws AttestationHubException {
         if (mtwProperties == null) {
             throw new AttestationHubException("Configuration parameters for MTW client are not initialized");
         }
 
         if (StringUtils.isBlank(lastDateTimeFromLastRunFile)) {
             log.info("No last run time to fetch the attestations");
-            return null;
+            return false;
         }
 
         log.info("Fetching host attestations added since {}", lastDateTimeFromLastRunFile);
-        Map<String, MWHost> hostIdToMwHostMap = new HashMap<>();
-        Reports reportsClient = MtwClientFactory.getHostReports(mtwProperties);
-        Hosts hostsClient = MtwClientFactory.getHostsClient(mtwProperties);
-
         ReportFilterCriteria criteria = new ReportFilterCriteria();
         criteria.fromDate = lastDateTimeFromLastRunFile;
         criteria.latestPerHost = "true";
         ReportCollection reports;
         try {
-            reports = reportsClient.search(criteria);
+            reports = getReportsClient().search(criteria);
         } catch (Exception e) {
             log.error("Unable to get host attestations or saml for from date : {}", lastDateTimeFromLastRunFile, e);
-            if (e instanceof NotAuthorizedException) {
-                updateTokenCache();
-                throw new AttestationHubException("Not authorized to connect to attestation service", e);
-            }
-            if (e instanceof ProcessingException) {
-                throw new AttestationHubException("Cannot connect to attestation service" + e);
-            }
-            return null;
+            handleAttestationServiceError(e);
+            return false;
         }
 
         if (reports != null && reports.getReports() != null && !reports.getReports().isEmpty()) {
-            List<Report> reportList = reports.getReports();
-            for (Report report : reportList) {
-                // retrieve attestation service host record
-                HostLocator hostLocator = new HostLocator();
-                hostLocator.id = report.getHostId();
-                Host asHost = hostsClient.retrieve(hostLocator);
-
-                if (asHost != null) {
-                    // retrieve saml record for host
-                    ReportFilterCriteria samlCriteria = new ReportFilterCriteria();
-                    samlCriteria.hostId = hostLocator.id.toString();
-                    samlCriteria.latestPerHost = "true";
-                    samlCriteria.limit = 1;
-                    String saml = reportsClient.searchSamlReports(samlCriteria);
-
-                    if (saml != null) {
-                        populateMwHost(asHost, report, hostIdToMwHostMap, saml);
-                    }
+            createParallelFetcher().run(reports.getReports(), new ParallelFetcher.FetchTask<Report>() {
+                @Override
+                public void fetch(Report report) throws AttestationHubException {
+                    fetchReportedHostAttestation(report, sink);
                 }
+            });
+        }
+        return true;
+    }
+
+    private void fetchReportedHostAttestation(Report report, HostAttestationSink sink)
+            throws AttestationHubException {
+        // retrieve attestation service host record
+        HostLocator hostLocator = new HostLocator();
+        hostLocator.id = report.getHostId();
+        Host asHost;
+        String saml;
+        try {
+            asHost = getHostsClient().retrieve(hostLocator);
+            if (asHost == null) {
+                return;
             }
+            // retrieve saml record for host
+            ReportFilterCriteria samlCriteria = new ReportFilterCriteria();
+            samlCriteria.hostId = hostLocator.id.toString();
+            samlCriteria.latestPerHost = "true";
+            samlCriteria.limit = 1;
+            saml = getReportsClient().searchSamlReports(samlCriteria);
+        } catch (Exception e) {
+            log.error("Unable to get host or saml report for host with ID={}", hostLocator.id, e);
+            handleAttestationServiceError(e);
+            return;
+        }
+
+        if (saml != null) {
+            sink.accept(createMwHost(asHost, report, saml));
         }
-        log.info("Returning the hosts and host attestations returned from MTW : {}", hostIdToMwHostMap.size());
-        return hostIdToMwHostMap;
     }
 
     public void updateHostsForSamlTimeout() throws AttestationHubException {
         log.info("updating trust status of hosts depending on the expiry of saml");
         PersistenceServiceFactory persistenceServiceFactory = PersistenceServiceFactory.getInstance();
         AhHostJpaController ahHostJpaController = persistenceServiceFactory.getHostController();
-        Reports hostReports = MtwClientFactory
-                .getHostReports(mtwPropertiesForverification);
-
-        List<AhHost> ahHostEntities = ahHostJpaController.findAhHostEntities();
-        log.info("Fetched {} hosts from attests hub db", ahHostEntities.size());
 
-        for (AhHost ahHost : ahHostEntities) {
-            log.info("Processing saml verification for host: {}", ahHost.getId());
-            String samlReport = ahHost.getSamlReport();
-
-            TrustAssertion verifyTrustAssertion = convertSamlToTrustAssertion(hostReports, samlReport);
-            if (verifyTrustAssertion == null) {
-                log.info("No verification report for host: {}", ahHost.getId());
-                continue;
-            }
-
-            DateTime currentDateTime = new DateTime(DateTimeZone.UTC);
-            Date notAfter = verifyTrustAssertion.getNotAfter();
-            DateTime notOnOrAfter = new DateTime(notAfter.getTime(), DateTimeZone.UTC);
-            log.info("Current Date : {} and saml notOnOrAfter : {}", currentDateTime, notOnOrAfter);
-            log.info("notOnOrAfter.isBeforeNow() = {} and  notOnOrAfter.isEqualNow() = {}", notOnOrAfter.isBeforeNow(),
-                    notOnOrAfter.isEqualNow());
-            if (notOnOrAfter.isBeforeNow() || notOnOrAfter.isEqualNow()) {
-                Date issueDate = verifyTrustAssertion.getDate();
-                DateTime issueDateUTC = new DateTime(issueDate.getTime(), DateTimeZone.UTC);
-
-                log.info("Marking host : {} as untrusted as the saml issue date is {} and expiring now which is {}",
-                        ahHost.getId(), issueDateUTC, currentDateTime);
-
-                ahHost.setTrusted(false);
-                try {
-                    ahHostJpaController.edit(ahHost);
-                } catch (NonexistentEntityException e) {
-                    log.error("Unable to update the host as host with id: {} does not exist in the DB ", ahHost.getId(),
-                            e);
-                } catch (Exception e) {
-                    log.error("Unable to update the host with id: {}", ahHost.getId(), e);
+        // the saml dates are extracted when a report is saved. Only reports
+        // saved without them, e.g. before an upgrade, are verified here once.
+        List<AhHost> unverifiedHosts = ahHostJpaController.findHostsWithUnverifiedSaml();
+        if (!unverifiedHosts.isEmpty()) {
+            log.info("Extracting saml validity of {} hosts from attestation hub db", unverifiedHosts.size());
+            Reports hostReports = getVerificationReportsClient();
+            List<AhHost> verifiedHosts = new ArrayList<>(unverifiedHosts.size());
+            for (AhHost ahHost : unverifiedHosts) {
+                log.debug("Processing saml verification for host: {}", ahHost.getId());
+                TrustAssertion verifyTrustAssertion = convertSamlToTrustAssertion(hostReports, ahHost.getSamlReport());
+                if (verifyTrustAssertion == null) {
+                    log.info("No verification report for host: {}", ahHost.getId());
+                    continue;
                 }
+                HostMapper.mapTrustAssertionToAhHost(ahHost, verifyTrustAssertion);
+                verifiedHosts.add(ahHost);
+            }
+            try {
+                ahHostJpaController.upsert(new ArrayList<AhHost>(), verifiedHosts);
+            } catch (Exception e) {
+                log.error("Unable to update the saml validity of hosts", e);
             }
         }
+
+        try {
+            int updated = ahHostJpaController.markExpiredHostsAsUntrusted(new Date());
+            log.info("Marked {} hosts as untrusted as their saml expired", updated);
+        } catch (Exception e) {
+            log.error("Unable to mark the hosts with expired saml as untrusted", e);
+        }
         log.info("Update of trust status of hosts depending on the expiry of saml completed");
     }
 
@@ -289,27 +468,77 @@ public class AttestationServiceClient {
         return fmt.print(dt);
     }
 
-    private void populateMwHost(Host host, Report hostReport, Map<String, MWHost> hostIdToMwHostMap, String saml)
-            throws AttestationHubException {
-        Reports hostReportsVerificationService = MtwClientFactory
-                .getHostReports(mtwPropertiesForverification);
+    private MWHost createMwHost(Host host, Report hostReport, String saml) {
         hostReport.setSaml(saml);
+        MWHost mwHost = new MWHost();
+        mwHost.setHost(host);
+        mwHost.setMwHostReport(hostReport);
+        return mwHost;
+    }
+
+    /**
+     * Verifies the SAML of a fetched host and fills in the trust details
+     * derived from it.
+     *
+     * @return false if the SAML could not be verified
+     */
+    public boolean verifyMwHost(MWHost mwHost) throws AttestationHubException {
+        Host host = mwHost.getHost();
+        Report hostReport = mwHost.getMwHostReport();
+        Reports hostReportsVerificationService = getVerificationReportsClient();
         TrustAssertion assertion = convertSamlToTrustAssertion(hostReportsVerificationService,
-                saml);
+                hostReport.getSaml());
         if (assertion == null) {
             log.error("Unable to verify trust assertion for host : {}", host.getId());
-            return;
+            return false;
         }
-        MWHost mwHost = new MWHost();
-        mwHost.setHost(host);
-        mwHost.setMwHostReport(hostReport);
         String str = convertDateToUTCString(assertion.getNotAfter());
         mwHost.setSamlValidTo(str);
         mwHost.setTrustAssertion(assertion);
         mwHost.setTrusted(hostReport.getTrustInformation().isOverall());
-        hostIdToMwHostMap.put(host.getId().toString(), mwHost);
         log.info("Received attestation with ID: {} for host ID : {} and name : {}", hostReport.getId(),
                 host.getId(), host.getHostName());
+        return true;
+    }
+
+    private synchronized Reports getReportsClient() throws AttestationHubException {
+        if (reportsClient == null) {
+            reportsClient = MtwClientFactory.getHostReports(mtwProperties);
+        }
+        return reportsClient;
+    }
+
+    private synchronized Hosts getHostsClient() throws AttestationHubException {
+        if (hostsClient == null) {
+            hostsClient = MtwClientFactory.getHostsClient(mtwProperties);
+        }
+        return hostsClient;
+    }
+
+    /**
+     * Returns the client used to verify SAML reports. It is shared by all
+     * threads and created again only after the bearer token was rotated.
+     */
+    private synchronized Reports getVerificationReportsClient() throws AttestationHubException {
+        if (verificationReportsClient == null) {
+            verificationReportsClient = MtwClientFactory.getHostReports(mtwPropertiesForverification);
+        }
+        return verificationReportsClient;
+    }
+
+    private class VerifyingMapSink implements HostAttestationSink {
+        private final Map<String, MWHost> hostIdToMwHostMap;
+
+        VerifyingMapSink(Map<String, MWHost> hostIdToMwHostMap) {
+            this.hostIdToMwHostMap = hostIdToMwHostMap;
+        }
+
+        @Override
+        public void accept(MWHost mwHost) throws AttestationHubException {
+            if (verifyMwHost(mwHost)) {
+                hostIdToMwHostMap.put(mwHost.getHost().getId().toString(), mwHost);
+            }
+        }
     }
 
     private void populateAttestationServiceProperties() throws AttestationHubException {
@@ -323,25 +552,34 @@ public class AttestationServiceClient {
         mtwPropertiesForverification = new Properties(mtwProperties);
         mtwPropertiesForverification.setProperty("mtwilson.api.truststore", truststore);
         mtwPropertiesForverification.setProperty("mtwilson.api.truststore.password", TRUSTSTORE_PASSWORD);
-        updateTokenCache();
+        tokenManager.getToken();
     }
 
+    /**
+     * Fetches a new AAS token, e.g. after the attestation service rejected the
+     * current one. Concurrent calls result in a single call to AAS.
+     */
     public void updateTokenCache () throws AttestationHubException{
-        try {
-            String trustStoreFileName = Folders.configuration() + File.separator + "truststore.p12";
-            TlsPolicy tlsPolicy = TlsPolicyBuilder.factory().strictWithKeystore(trustStoreFileName, TRUSTSTORE_PASSWORD).build();
-            TlsConnection tlsConnection = new TlsConnection(new URL(AttestationHubConfigUtil.get(Constants.AAS_API_URL)), tlsPolicy);
-
-            aasBearerToken =new AASTokenFetcher().updateCachedToken(
-                    AttestationHubConfigUtil.get(Constants.ATTESTATION_HUB_SERVICE_USERNAME),
-                    AttestationHubConfigUtil.get(Constants.ATTESTATION_HUB_SERVICE_PASSWORD),
-                    tlsConnection,
-                    aasBearerToken);
-            mtwProperties.setProperty("bearer.token", aasBearerToken);
-            mtwPropertiesForverification.setProperty("bearer.token", aasBearerToken);
-        } catch (Exception exc) {
-            log.error("Cannot fetch token from AAS: ", exc);
-            throw new AttestationHubException("Cannot fetch token from AAS: ", exc);
-        }
+        tokenManager.refresh();
+    }
+
+    private String fetchAasToken() throws Exception {
+        String trustStoreFileName = Folders.configuration() + File.separator + "truststore.p12";
+        TlsPolicy tlsPolicy = TlsPolicyBuilder.factory().strictWithKeystore(trustStoreFileName, TRUSTSTORE_PASSWORD).build();
+        TlsConnection tlsConnection = new TlsConnection(new URL(AttestationHubConfigUtil.get(Constants.AAS_API_URL)), tlsPolicy);
+
+        return new AASTokenFetcher().updateCachedToken(
+                AttestationHubConfigUtil.get(Constants.ATTESTATION_HUB_SERVICE_USERNAME),
+                AttestationHubConfigUtil.get(Constants.ATTESTATION_HUB_SERVICE_PASSWORD),
+                tlsConnection,
+                null);
+    }
+
+    private synchronized void applyToken(String token) {
+        mtwProperties.setProperty("bearer.token", token);
+        mtwPropertiesForverification.setProperty("bearer.token", token);
+        reportsClient = null;
+        hostsClient = null;
+        verificationReportsClient = null;
     }
 }
@@ -0,0 +1,17 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.attestationhub.mtwclient;
+
+import com.intel.attestationhub.api.MWHost;
+import com.intel.mtwilson.attestationhub.exception.AttestationHubException;
+
+/**
+ * Receives host attestations as they are fetched from the attestation service.
+ * Implementations must be thread safe.
+ */
+public interface HostAttestationSink {
+    public void accept(MWHost mwHost) throws AttestationHubException;
+}
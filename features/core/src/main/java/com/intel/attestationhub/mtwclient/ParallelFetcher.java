@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.attestationhub.mtwclient;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.intel.mtwilson.attestationhub.exception.AttestationHubException;
+
+/**
+ * Runs a fetch task for every item of a list on a bounded worker pool. At most
+ * maxInFlight tasks are submitted at any time; the submitting thread blocks
+ * until a slot is free. The first AttestationHubException raised by a task
+ * stops further submissions and is rethrown once the in-flight tasks finish.
+ */
+class ParallelFetcher {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(ParallelFetcher.class);
+
+    interface FetchTask<T> {
+        void fetch(T item) throws AttestationHubException;
+    }
+
+    private final int workers;
+    private final int maxInFlight;
+
+    ParallelFetcher(int workers, int maxInFlight) {
+        this.workers = Math.max(1, workers);
+        this.maxInFlight = Math.max(this.workers, maxInFlight);
+    }
+
+    <T> void run(List<T> items, final FetchTask<T> task) throws AttestationHubException {
+        if (items == null || items.isEmpty()) {
+            return;
+        }
+        if (workers == 1 || items.size() == 1) {
+            for (T item : items) {
+                task.fetch(item);
+            }
+            return;
+        }
+
+        final Semaphore inFlight = new Semaphore(maxInFlight);
+        final AtomicReference<AttestationHubException> failure = new AtomicReference<>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(workers, items.size()),
+                new FetchThreadFactory());
+        try {
+            for (final T item : items) {
+                if (failure.get() != null) {
+                    break;
+                }
+                inFlight.acquire();
+                if (failure.get() != null) {
+                    inFlight.release();
+                    break;
+                }
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            task.fetch(item);
+                        } catch (AttestationHubException e) {
+                            failure.compareAndSet(null, e);
+                        } catch (RuntimeException e) {
+                            log.error("Unexpected error while fetching attestation data", e);
+                        } finally {
+                            inFlight.release();
+                        }
+                    }
+                });
+            }
+            // wait for the tasks still running
+            inFlight.acquire(maxInFlight);
+            inFlight.release(maxInFlight);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AttestationHubException("Interrupted while fetching attestation data", e);
+        } finally {
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    private static class FetchThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "attestation-fetch-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.attestationhub.quartz;
+
+import com.intel.attestationhub.api.MWHost;
+import com.intel.attestationhub.mtwclient.AttestationServiceClient;
+import com.intel.attestationhub.mtwclient.HostAttestationSink;
+import com.intel.attestationhub.service.AttestationHubService;
+import com.intel.mtwilson.attestationhub.exception.AttestationHubException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Moves host attestations from the attestation service into the hub DB as a
+ * staged pipeline: fetch, then SAML verification, then persist. The stages are
+ * connected by bounded queues, so only a few chunks of hosts are held in
+ * memory at any time regardless of the fleet size. Publishing to the plugins
+ * reads from the DB and runs once the pipeline has drained.
+ */
+class AttestationPollerPipeline {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(AttestationPollerPipeline.class);
+    private static final MWHost END_OF_STREAM = new MWHost();
+
+    /**
+     * The fetch stage. Runs on the calling thread and hands every host it
+     * retrieves to the sink.
+     */
+    interface FetchStage {
+        boolean fetch(HostAttestationSink sink) throws AttestationHubException;
+    }
+
+    private final AttestationServiceClient attestationServiceClient;
+    private final AttestationHubService attestationHubService;
+    private final int verifyThreads;
+    private final int persistChunkSize;
+    private final BlockingQueue<MWHost> fetchedQueue;
+    private final BlockingQueue<MWHost> verifiedQueue;
+    private final AtomicReference<AttestationHubException> failure = new AtomicReference<>();
+    private final AtomicInteger persistedCount = new AtomicInteger();
+
+    AttestationPollerPipeline(AttestationServiceClient attestationServiceClient,
+            AttestationHubService attestationHubService, int queueSize, int verifyThreads, int persistChunkSize) {
+        this.attestationServiceClient = attestationServiceClient;
+        this.attestationHubService = attestationHubService;
+        this.verifyThreads = verifyThreads;
+        this.persistChunkSize = persistChunkSize;
+        this.fetchedQueue = new ArrayBlockingQueue<>(queueSize);
+        this.verifiedQueue = new ArrayBlockingQueue<>(queueSize);
+    }
+
+    /**
+     * @return false if the fetch stage had nothing to fetch
+     * @throws AttestationHubException if fetching or persisting failed
+     */
+    boolean run(FetchStage fetchStage) throws AttestationHubException {
+        List<Thread> verifiers = new ArrayList<>(verifyThreads);
+        for (int i = 0; i < verifyThreads; i++) {
+            Thread verifier = new Thread(new VerifyStage(), "poller-verify-" + (i + 1));
+            verifier.setDaemon(true);
+            verifier.start();
+            verifiers.add(verifier);
+        }
+        Thread persister = new Thread(new PersistStage(), "poller-persist");
+        persister.setDaemon(true);
+        persister.start();
+
+        boolean fetched = false;
+        AttestationHubException fetchFailure = null;
+        try {
+            fetched = fetchStage.fetch(new HostAttestationSink() {
+                @Override
+                public void accept(MWHost mwHost) throws AttestationHubException {
+                    if (failure.get() != null) {
+                        throw failure.get();
+                    }
+                    put(fetchedQueue, mwHost);
+                }
+            });
+        } catch (AttestationHubException e) {
+            fetchFailure = e;
+        } finally {
+            try {
+                for (int i = 0; i < verifyThreads; i++) {
+                    put(fetchedQueue, END_OF_STREAM);
+                }
+                join(verifiers);
+                put(verifiedQueue, END_OF_STREAM);
+                join(persister);
+            } catch (AttestationHubException e) {
+                if (fetchFailure == null) {
+                    fetchFailure = e;
+                }
+            }
+        }
+
+        if (fetchFailure != null) {
+            throw fetchFailure;
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        log.info("Poller pipeline persisted {} hosts", persistedCount.get());
+        return fetched;
+    }
+
+    private class VerifyStage implements Runnable {
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    MWHost mwHost = fetchedQueue.take();
+                    if (mwHost == END_OF_STREAM) {
+                        return;
+                    }
+                    if (failure.get() != null) {
+                        continue;
+                    }
+                    try {
+                        if (attestationServiceClient.verifyMwHost(mwHost)) {
+                            put(verifiedQueue, mwHost);
+                        }
+                    } catch (AttestationHubException e) {
+                        failure.compareAndSet(null, e);
+                    } catch (RuntimeException e) {
+                        log.error("Error verifying attestation of host: {}", mwHost.getHost().getId(), e);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private class PersistStage implements Runnable {
+        @Override
+        public void run() {
+            Map<String, MWHost> chunk = new LinkedHashMap<>(persistChunkSize);
+            try {
+                while (true) {
+                    MWHost mwHost = verifiedQueue.take();
+                    if (mwHost == END_OF_STREAM) {
+                        save(chunk);
+                        return;
+                    }
+                    // keep draining after a failure so the upstream stages never block
+                    if (failure.get() != null) {
+                        continue;
+                    }
+                    chunk.put(mwHost.getHost().getId().toString(), mwHost);
+                    if (chunk.size() >= persistChunkSize) {
+                        save(chunk);
+                        chunk = new LinkedHashMap<>(persistChunkSize);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void save(Map<String, MWHost> chunk) {
+            if (chunk.isEmpty() || failure.get() != null) {
+                return;
+            }
+            try {
+                attestationHubService.saveHosts(chunk);
+                persistedCount.addAndGet(chunk.size());
+                log.debug("Persisted a chunk of {} hosts", chunk.size());
+            } catch (AttestationHubException e) {
+                log.error("Poller.execute: Error saving hosts from MTW", e);
+                failure.compareAndSet(null, e);
+            }
+        }
+    }
+
+    private static void put(BlockingQueue<MWHost> queue, MWHost mwHost) throws AttestationHubException {
+        try {
+            queue.put(mwHost);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AttestationHubException("Interrupted while queueing host attestations", e);
+        }
+    }
+
+    private static void join(List<Thread> threads) throws AttestationHubException {
+        for (Thread thread : threads) {
+            join(thread);
+        }
+    }
+
+    private static void join(Thread thread) throws AttestationHubException {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AttestationHubException("Interrupted while waiting for the poller pipeline", e);
+        }
+    }
+}
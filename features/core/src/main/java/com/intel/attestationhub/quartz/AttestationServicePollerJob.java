@@ -5,15 +5,19 @@
 
 package com.intel.attestationhub.quartz;
 
-import com.intel.attestationhub.api.MWHost;
 import com.intel.attestationhub.manager.PluginManager;
 import com.intel.attestationhub.mtwclient.AttestationServiceClient;
+import com.intel.attestationhub.mtwclient.HostAttestationSink;
 import com.intel.attestationhub.service.AttestationHubService;
 import com.intel.attestationhub.service.impl.AttestationHubServiceImpl;
 import com.intel.mtwilson.Folders;
+import com.intel.mtwilson.attestationhub.common.AttestationHubConfigUtil;
+import com.intel.mtwilson.attestationhub.common.Constants;
 import com.intel.mtwilson.attestationhub.data.AhHost;
 import com.intel.mtwilson.flavor.rest.v2.model.Host;
 import com.intel.mtwilson.attestationhub.exception.AttestationHubException;
+import com.intel.mtwilson.attestationhub.service.ConnectionPoolStatistics;
+import com.intel.mtwilson.attestationhub.service.PersistenceServiceFactory;
 import org.apache.commons.lang.StringUtils;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
@@ -21,15 +25,20 @@ import org.joda.time.format.DateTimeFormatter;
 import org.joda.time.format.ISODateTimeFormat;
 
 import java.io.*;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 public class AttestationServicePollerJob {
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(AttestationServicePollerJob.class);
     private AttestationServiceClient attestationServiceClient = null;
     private File lastRunDateTimeFile;
     private static boolean isRetry = false;
+    private static final int DEFAULT_PIPELINE_QUEUE_SIZE = 200;
+    private static final int DEFAULT_PIPELINE_VERIFY_THREADS = 4;
+    private static final int DEFAULT_PIPELINE_PERSIST_CHUNK_SIZE = 100;
 
     public AttestationServicePollerJob() throws AttestationHubException {
         attestationServiceClient = AttestationServiceClient.getInstance();
@@ -54,10 +63,10 @@ public class AttestationServicePollerJob {
         DateTime dt = new DateTime(DateTimeZone.UTC);
         DateTimeFormatter fmt = ISODateTimeFormat.dateTime();
         String str = fmt.print(dt);
-        Map<String, MWHost> hostAttestationsMap = null;
+        boolean hostsSaved;
         if (isFirstRun) {
             log.info("Its the first run for attestation hub. Init data");
-            hostAttestationsMap = initData();
+            hostsSaved = initData();
             try {
                 lastRunDateTimeFile.createNewFile();
             } catch (IOException e) {
@@ -66,29 +75,17 @@ public class AttestationServicePollerJob {
             log.info("Init data complete");
         } else {
             log.info("init data was done earlier. Update data");
-            hostAttestationsMap = updateData();
+            hostsSaved = updateData();
             log.info("Update of data after pulling host attestations from MTW complete");
 
         }
 
-        if (hostAttestationsMap == null) {
+        if (!hostsSaved) {
             log.info(
                     "Attestation data not received from MTW. Some error receiving host attestations data to be pushed in Attestation Hub DB");
             return;
         }
 
-        /*
-         * Add the hosts in the DB
-         */
-        AttestationHubService attestationHubService = AttestationHubServiceImpl.getInstance();
-        try {
-            attestationHubService.saveHosts(hostAttestationsMap);
-        } catch (AttestationHubException e) {
-            log.error("Poller.execute: Error saving hosts from MTW", e);
-            logPollerRunComplete();
-            return;
-        }
-
         // Delete hosts whose SAML has exceeded the timeout
         try {
             attestationServiceClient.updateHostsForSamlTimeout();
@@ -104,19 +101,22 @@ public class AttestationServicePollerJob {
         logPollerRunComplete();
     }
 
-    private Map<String, MWHost> updateData() {
-        Map<String, MWHost> hostAttestationsMap = null;
-        String lastDateTimeFromLastRunFile = readDateTimeFromLastRunFile();
+    private boolean updateData() {
+        final String lastDateTimeFromLastRunFile = readDateTimeFromLastRunFile();
         if (StringUtils.isBlank(lastDateTimeFromLastRunFile)) {
             log.info("the last date time is not read. Doing an init in update");
-            hostAttestationsMap = initData();
-            return hostAttestationsMap;
+            return initData();
         }
         // Process the attestations received in the time window
 
         try {
             syncDeletedHosts();
-            hostAttestationsMap = attestationServiceClient.fetchHostAttestations(lastDateTimeFromLastRunFile);
+            return createPipeline().run(new AttestationPollerPipeline.FetchStage() {
+                @Override
+                public boolean fetch(HostAttestationSink sink) throws AttestationHubException {
+                    return attestationServiceClient.fetchHostAttestations(lastDateTimeFromLastRunFile, sink);
+                }
+            });
         } catch (AttestationHubException e) {
             log.error("Poller.execute: Error fetching host attestations created since {} from MTW",
                     lastDateTimeFromLastRunFile, e);
@@ -124,21 +124,19 @@ public class AttestationServicePollerJob {
                 waitForAttestationServiceAndRetry();
             }
             logPollerRunComplete();
-            return null;
+            return false;
         }
-
-        return hostAttestationsMap;
     }
 
-    private Map<String, MWHost> initData() {
-        List<Host> allHosts;
+    private boolean initData() {
+        final List<Host> allHosts;
 
         try {
             allHosts = attestationServiceClient.fetchHosts();
             if (allHosts == null) {
                 log.info("AttestationServicePollerJob.execute - No hosts returned");
                 logPollerRunComplete();
-                return null;
+                return false;
             } else {
                 log.info("AttestationServicePollerJob.execute - Fetched {} hosts", allHosts.size());
             }
@@ -148,26 +146,38 @@ public class AttestationServicePollerJob {
                 waitForAttestationServiceAndRetry();
             }
             logPollerRunComplete();
-            return null;
+            return false;
         }
 
         /*
-         * Fetch the host attestations
+         * Fetch the host attestations and save them in the DB
          */
         log.info("AttestationServicePollerJob.execute - Fetching attestations for the above hosts");
-        Map<String, MWHost> hostAttestationsMap;
         try {
-            hostAttestationsMap = attestationServiceClient.fetchHostAttestations(allHosts);
+            return createPipeline().run(new AttestationPollerPipeline.FetchStage() {
+                @Override
+                public boolean fetch(HostAttestationSink sink) throws AttestationHubException {
+                    return attestationServiceClient.fetchHostAttestations(allHosts, sink);
+                }
+            });
         } catch (AttestationHubException e) {
             log.error("Poller.execute: Error fetching SAMLS for hosts from MTW", e);
             if (e.getMessage().contains("java.net.ConnectException: Connection refused")) {
                 waitForAttestationServiceAndRetry();
             }
             logPollerRunComplete();
-            return null;
+            return false;
         }
+    }
 
-        return hostAttestationsMap;
+    private AttestationPollerPipeline createPipeline() {
+        return new AttestationPollerPipeline(attestationServiceClient, AttestationHubServiceImpl.getInstance(),
+                AttestationHubConfigUtil.getPositiveInt(Constants.ATTESTATION_HUB_PIPELINE_QUEUE_SIZE,
+                        DEFAULT_PIPELINE_QUEUE_SIZE),
+                AttestationHubConfigUtil.getPositiveInt(Constants.ATTESTATION_HUB_PIPELINE_VERIFY_THREADS,
+                        DEFAULT_PIPELINE_VERIFY_THREADS),
+                AttestationHubConfigUtil.getPositiveInt(Constants.ATTESTATION_HUB_PIPELINE_PERSIST_CHUNK_SIZE,
+                        DEFAULT_PIPELINE_PERSIST_CHUNK_SIZE));
     }
 
     private void waitForAttestationServiceAndRetry() {
@@ -258,6 +268,10 @@ public class AttestationServicePollerJob {
 
     private void logPollerRunComplete() {
         log.info("Poller run completed at {}", new Date());
+        ConnectionPoolStatistics poolStatistics = PersistenceServiceFactory.getConnectionPoolStatistics();
+        if (poolStatistics != null) {
+            log.info("Database connection pool usage: {}", poolStatistics);
+        }
     }
 
     //mark hosts untrusted and deleted if hosts are deleted in VS
@@ -267,38 +281,32 @@ public class AttestationServicePollerJob {
         AttestationHubService attestationHubService = AttestationHubServiceImpl.getInstance();
         allHostsInIH = attestationHubService.getHosts();
         allHosts = attestationServiceClient.fetchHosts();
-        if (allHosts == null || allHosts.isEmpty()) {
-            syncAllHosts(allHostsInIH);
-        }
-        else {
-            for (AhHost hostInIH : allHostsInIH) {
-                boolean hostFound = false;
-                for (Host host : allHosts) {
-                    if (host.getHardwareUuid().toString().toLowerCase().
-                            equals(hostInIH.getHardwareUuid().toLowerCase())) {
-                        hostFound = true;
-                        break;
-                    }
-                }
-                if (!hostFound) {
-                    markHostWithProperStatus(hostInIH);
-                }
+        Set<String> hardwareUuidsInVS = new HashSet<>();
+        if (allHosts != null) {
+            for (Host host : allHosts) {
+                hardwareUuidsInVS.add(host.getHardwareUuid().toString().toLowerCase());
             }
         }
-    }
 
-    private void syncAllHosts(List<AhHost> ahHostList) throws AttestationHubException{
-        for (AhHost hostInIH : ahHostList) {
-            markHostWithProperStatus(hostInIH);
+        // a trusted host missing in VS is first marked untrusted, and deleted
+        // on a later run once it is already untrusted
+        List<String> hostsToMarkDeleted = new ArrayList<>();
+        List<String> hostsToMarkUntrusted = new ArrayList<>();
+        for (AhHost hostInIH : allHostsInIH) {
+            if (hostInIH.getHardwareUuid() != null
+                    && hardwareUuidsInVS.contains(hostInIH.getHardwareUuid().toLowerCase())) {
+                continue;
+            }
+            if (Boolean.TRUE.equals(hostInIH.getTrusted())) {
+                hostsToMarkUntrusted.add(hostInIH.getId());
+            } else {
+                hostsToMarkDeleted.add(hostInIH.getId());
+            }
         }
-    }
-
-    private void markHostWithProperStatus(AhHost hostInIH) throws AttestationHubException {
-        AttestationHubService attestationHubService = AttestationHubServiceImpl.getInstance();
-        if (!hostInIH.getTrusted())
-            attestationHubService.markHostAsDeleted(hostInIH);
-        else
-            attestationHubService.markHostAsUntrusted(hostInIH);
+        log.debug("Hosts deleted in VS: {} to be marked untrusted, {} to be marked deleted",
+                hostsToMarkUntrusted.size(), hostsToMarkDeleted.size());
+        attestationHubService.markHostsAsDeleted(hostsToMarkDeleted);
+        attestationHubService.markHostsAsUntrusted(hostsToMarkUntrusted);
     }
 
 }
@@ -5,12 +5,16 @@
 package com.intel.mtwilson.attestationhub.controller;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityNotFoundException;
 import javax.persistence.Query;
+import javax.persistence.TemporalType;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
 
@@ -24,6 +28,7 @@ public class AhHostJpaController implements Serializable {
      * 
      */
     private static final long serialVersionUID = 1L;
+    private static final int MAX_IDS_PER_STATEMENT = 1000;
 
     public AhHostJpaController(EntityManagerFactory emf) {
 	this.emf = emf;
@@ -77,6 +82,173 @@ public class AhHostJpaController implements Serializable {
 	}
     }
 
+    /**
+     * Writes the given hosts in a single transaction. Edits are merged before
+     * the new hosts are persisted, and the statements are sent to the database
+     * in JDBC batches.
+     */
+    public void upsert(Collection<AhHost> hostsToCreate, Collection<AhHost> hostsToEdit) throws Exception {
+	EntityManager em = null;
+	try {
+	    em = getEntityManager();
+	    em.getTransaction().begin();
+	    for (AhHost ahHost : hostsToEdit) {
+		em.merge(ahHost);
+	    }
+	    for (AhHost ahHost : hostsToCreate) {
+		em.persist(ahHost);
+	    }
+	    em.getTransaction().commit();
+	} catch (Exception ex) {
+	    if (em != null && em.getTransaction().isActive()) {
+		em.getTransaction().rollback();
+	    }
+	    throw ex;
+	} finally {
+	    if (em != null) {
+		em.close();
+	    }
+	}
+    }
+
+    /**
+     * Changes applied to the hosts of a chunk while they are managed by the
+     * entity manager that writes them.
+     */
+    public interface HostChunkUpdate {
+	/**
+	 * Updates the existing hosts in place and returns the hosts to create.
+	 * 
+	 * @param existingHosts
+	 *            the hosts matching the ids or hardware uuids of the chunk
+	 */
+	Collection<AhHost> apply(List<AhHost> existingHosts);
+    }
+
+    /**
+     * Looks up the hosts matching any of the given ids or (case insensitive)
+     * hardware uuids, lets the update change them and persists the hosts it
+     * returns, all in one transaction. The existing hosts stay managed, so
+     * their changes are written on commit without the lookup a merge of a
+     * detached host needs. The statements are sent to the database in JDBC
+     * batches.
+     */
+    public void upsert(Collection<String> ids, Collection<String> hardwareUuids, HostChunkUpdate update)
+	    throws Exception {
+	EntityManager em = null;
+	try {
+	    em = getEntityManager();
+	    em.getTransaction().begin();
+	    for (AhHost ahHost : update.apply(findHostsByIdsOrHardwareUuids(em, ids, hardwareUuids))) {
+		em.persist(ahHost);
+	    }
+	    em.getTransaction().commit();
+	} catch (Exception ex) {
+	    if (em != null && em.getTransaction().isActive()) {
+		em.getTransaction().rollback();
+	    }
+	    throw ex;
+	} finally {
+	    if (em != null) {
+		em.close();
+	    }
+	}
+    }
+
+    /**
+     * Marks the hosts with the given ids as deleted using bulk update
+     * statements instead of loading and merging every host.
+     * 
+     * @return the number of hosts updated
+     */
+    public int markHostsAsDeleted(Collection<String> ids) throws Exception {
+	return bulkUpdate("UPDATE AhHost a SET a.deleted = true WHERE a.id IN :ids", ids);
+    }
+
+    /**
+     * Marks the hosts with the given ids as untrusted using bulk update
+     * statements instead of loading and merging every host.
+     * 
+     * @return the number of hosts updated
+     */
+    public int markHostsAsUntrusted(Collection<String> ids) throws Exception {
+	return bulkUpdate("UPDATE AhHost a SET a.trusted = false WHERE a.id IN :ids", ids);
+    }
+
+    /**
+     * Marks every host whose report expired before the given time as deleted
+     * with a single update statement.
+     * 
+     * @return the number of hosts updated
+     */
+    public int markExpiredHostsAsDeleted(Date expiredBefore) throws Exception {
+	return bulkUpdate("UPDATE AhHost a SET a.deleted = true WHERE a.validTo < :now AND (a.deleted IS NULL OR a.deleted = false)",
+		expiredBefore);
+    }
+
+    /**
+     * Marks every host whose report expired before the given time as
+     * untrusted with a single update statement.
+     * 
+     * @return the number of hosts updated
+     */
+    public int markExpiredHostsAsUntrusted(Date expiredBefore) throws Exception {
+	return bulkUpdate("UPDATE AhHost a SET a.trusted = false WHERE a.validTo < :now AND (a.trusted IS NULL OR a.trusted = true)",
+		expiredBefore);
+    }
+
+    private int bulkUpdate(String jpql, Date now) throws Exception {
+	EntityManager em = null;
+	try {
+	    em = getEntityManager();
+	    em.getTransaction().begin();
+	    Query query = em.createQuery(jpql);
+	    query.setParameter("now", now, TemporalType.TIMESTAMP);
+	    int updated = query.executeUpdate();
+	    em.getTransaction().commit();
+	    return updated;
+	} catch (Exception ex) {
+	    if (em != null && em.getTransaction().isActive()) {
+		em.getTransaction().rollback();
+	    }
+	    throw ex;
+	} finally {
+	    if (em != null) {
+		em.close();
+	    }
+	}
+    }
+
+    private int bulkUpdate(String jpql, Collection<String> ids) throws Exception {
+	if (ids == null || ids.isEmpty()) {
+	    return 0;
+	}
+	List<String> idList = new ArrayList<>(ids);
+	int updated = 0;
+	EntityManager em = null;
+	try {
+	    em = getEntityManager();
+	    em.getTransaction().begin();
+	    // keep the IN lists within the bind parameter limits of the driver
+	    for (int start = 0; start < idList.size(); start += MAX_IDS_PER_STATEMENT) {
+		Query query = em.createQuery(jpql);
+		query.setParameter("ids", idList.subList(start, Math.min(start + MAX_IDS_PER_STATEMENT, idList.size())));
+		updated += query.executeUpdate();
+	    }
+	    em.getTransaction().commit();
+	} catch (Exception ex) {
+	    if (em != null && em.getTransaction().isActive()) {
+		em.getTransaction().rollback();
+	    }
+	    throw ex;
+	} finally {
+	    if (em != null) {
+		em.close();
+	    }
+	}
+	return updated;
+    }
+
     public void destroy(String id) throws NonexistentEntityException {
 	EntityManager em = null;
 	try {
@@ -160,6 +332,45 @@ public class AhHostJpaController implements Serializable {
 	return hostsList;
     }
 
+    /**
+     * Returns, in one query, the hosts matching any of the given ids or
+     * (case insensitive) hardware uuids
+     */
+    public List<AhHost> findHostsByIdsOrHardwareUuids(Collection<String> ids, Collection<String> hardwareUuids) {
+	EntityManager em = getEntityManager();
+	try {
+	    return findHostsByIdsOrHardwareUuids(em, ids, hardwareUuids);
+	} finally {
+	    em.close();
+	}
+    }
+
+    private List<AhHost> findHostsByIdsOrHardwareUuids(EntityManager em, Collection<String> ids,
+	    Collection<String> hardwareUuids) {
+	List<String> upperCaseHardwareUuids = new ArrayList<>(hardwareUuids.size());
+	for (String hardwareUuid : hardwareUuids) {
+	    upperCaseHardwareUuids.add(hardwareUuid.toUpperCase());
+	}
+	Query query = em.createNamedQuery("AhHost.findByIdsOrHardwareUuids");
+	query.setParameter("ids", ids);
+	query.setParameter("hardwareUuids", upperCaseHardwareUuids);
+	return query.getResultList();
+    }
+
+    /**
+     * Returns the active hosts whose SAML report has not been verified and
+     * had its dates extracted yet
+     */
+    public List<AhHost> findHostsWithUnverifiedSaml() {
+	EntityManager em = getEntityManager();
+	try {
+	    Query query = em.createNamedQuery("AhHost.findWithUnverifiedSaml");
+	    return query.getResultList();
+	} finally {
+	    em.close();
+	}
+    }
+
     public List<AhHost> findHostsByHardwareUuid(String hardwareUuid) {
 	List<AhHost> hostsList = null;
 	EntityManager em = getEntityManager();
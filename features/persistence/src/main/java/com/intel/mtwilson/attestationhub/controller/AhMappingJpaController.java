@@ -5,18 +5,25 @@
 package com.intel.mtwilson.attestationhub.controller;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityNotFoundException;
 import javax.persistence.Query;
+import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
 
 import com.intel.mtwilson.attestationhub.controller.exceptions.NonexistentEntityException;
 import com.intel.mtwilson.attestationhub.controller.exceptions.PreexistingEntityException;
 import com.intel.mtwilson.attestationhub.data.AhMapping;
+import com.intel.mtwilson.attestationhub.data.AhPublishedHost;
 import com.intel.mtwilson.attestationhub.data.AhTenant;
 
 public class AhMappingJpaController implements Serializable {
@@ -199,4 +206,33 @@ public class AhMappingJpaController implements Serializable {
 	return mappingsList;
     }
 
+
+    /**
+     * Returns, in one query, the active hosts of the active mappings of all
+     * active tenants, grouped by tenant id. If several active hosts share the
+     * hardware uuid of a mapping, only the first one is returned for it.
+     */
+    public Map<String, List<AhPublishedHost>> findActiveHostsByTenant() {
+	EntityManager em = getEntityManager();
+	try {
+	    TypedQuery<AhPublishedHost> query = em.createNamedQuery("AhMapping.findActiveHostsOfActiveTenants",
+		    AhPublishedHost.class);
+	    Map<String, List<AhPublishedHost>> hostsByTenant = new LinkedHashMap<>();
+	    Set<String> mappingIds = new HashSet<>();
+	    for (AhPublishedHost host : query.getResultList()) {
+		if (!mappingIds.add(host.getMappingId())) {
+		    continue;
+		}
+		List<AhPublishedHost> tenantHosts = hostsByTenant.get(host.getTenantId());
+		if (tenantHosts == null) {
+		    tenantHosts = new ArrayList<>();
+		    hostsByTenant.put(host.getTenantId(), tenantHosts);
+		}
+		tenantHosts.add(host);
+	    }
+	    return hostsByTenant;
+	} finally {
+	    em.close();
+	}
+    }
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.attestationhub.controller;
+
+import com.intel.mtwilson.attestationhub.data.AhPublishWatermark;
+
+import java.io.Serializable;
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Query;
+
+public class AhPublishWatermarkJpaController implements Serializable {
+
+    public AhPublishWatermarkJpaController(EntityManagerFactory emf) {
+        this.emf = emf;
+    }
+    private EntityManagerFactory emf = null;
+
+    public EntityManager getEntityManager() {
+        return emf.createEntityManager();
+    }
+
+    /**
+     * Creates the watermark or replaces the stored one with the same id
+     */
+    public void save(AhPublishWatermark ahPublishWatermark) {
+        EntityManager em = getEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.merge(ahPublishWatermark);
+            em.getTransaction().commit();
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
+    }
+
+    public AhPublishWatermark findByTenantIdAndPluginName(String tenantId, String pluginName) {
+        EntityManager em = getEntityManager();
+        try {
+            Query query = em.createNamedQuery("AhPublishWatermark.findByTenantIdAndPluginName");
+            query.setParameter("tenantId", tenantId);
+            query.setParameter("pluginName", pluginName);
+            List<AhPublishWatermark> list = query.getResultList();
+            if (list != null && list.size() > 0) {
+                return list.get(0);
+            }
+            return null;
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Forgets what was published for the tenant, so that the next publish to
+     * each of its plugins is a full one
+     */
+    public int destroyByTenantId(String tenantId) {
+        EntityManager em = getEntityManager();
+        try {
+            em.getTransaction().begin();
+            Query query = em.createNamedQuery("AhPublishWatermark.deleteByTenantId");
+            query.setParameter("tenantId", tenantId);
+            int deleted = query.executeUpdate();
+            em.getTransaction().commit();
+            return deleted;
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
+    }
+
+}
@@ -5,7 +5,9 @@
 package com.intel.mtwilson.attestationhub.data;
 
 import java.io.Serializable;
+import java.util.Calendar;
 import java.util.Date;
+import java.util.TimeZone;
 
 import javax.persistence.Basic;
 import javax.persistence.Cacheable;
@@ -17,6 +19,7 @@ import javax.persistence.NamedQuery;
 import javax.persistence.Table;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
+import javax.xml.bind.DatatypeConverter;
 import javax.xml.bind.annotation.XmlRootElement;
 
 @Entity
@@ -28,12 +31,14 @@ import javax.xml.bind.annotation.XmlRootElement;
 	@NamedQuery(name = "AhHost.findById", query = "SELECT a FROM AhHost a WHERE a.id = :id"),
 	@NamedQuery(name = "AhHost.findByHardwareUuid", query = "SELECT a FROM AhHost a WHERE upper(a.hardwareUuid) = :hardwareUuid"),
 	@NamedQuery(name = "AhHost.findByHostName", query = "SELECT a FROM AhHost a WHERE upper(a.hostName) = :hostName"),
+	@NamedQuery(name = "AhHost.findByIdsOrHardwareUuids", query = "SELECT a FROM AhHost a WHERE a.id IN :ids OR upper(a.hardwareUuid) IN :hardwareUuids"),
 	@NamedQuery(name = "AhHost.findByBiosMleUuid", query = "SELECT a FROM AhHost a WHERE a.biosMleUuid = :biosMleUuid"),
 	@NamedQuery(name = "AhHost.findByVmmMleUuid", query = "SELECT a FROM AhHost a WHERE a.vmmMleUuid = :vmmMleUuid"),
 	@NamedQuery(name = "AhHost.findByAikCertificate", query = "SELECT a FROM AhHost a WHERE a.aikCertificate = :aikCertificate"),
 	@NamedQuery(name = "AhHost.findByAikSha384", query = "SELECT a FROM AhHost a WHERE a.aikSha384 = :aikSha384"),
 	@NamedQuery(name = "AhHost.findByConnectionUrl", query = "SELECT a FROM AhHost a WHERE a.connectionUrl = :connectionUrl"),
 	@NamedQuery(name = "AhHost.findByTrustTagsJson", query = "SELECT a FROM AhHost a WHERE a.trustTagsJson = :trustTagsJson"),
+	@NamedQuery(name = "AhHost.findWithUnverifiedSaml", query = "SELECT a FROM AhHost a WHERE a.samlHash IS NULL AND a.samlReport IS NOT NULL AND (a.deleted IS NULL OR a.deleted = false)"),
 	@NamedQuery(name = "AhHost.findBySamlReport", query = "SELECT a FROM AhHost a WHERE a.samlReport = :samlReport"),
 	@NamedQuery(name = "AhHost.findByCreatedDate", query = "SELECT a FROM AhHost a WHERE a.createdDate = :createdDate"),
 	@NamedQuery(name = "AhHost.findByCreatedBy", query = "SELECT a FROM AhHost a WHERE a.createdBy = :createdBy"),
@@ -62,9 +67,15 @@ public class AhHost implements Serializable {
     @Column(name = "trust_tags_json")
     private String trustTagsJson;
     @Column(name = "valid_to")
-    private String validTo;
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date validTo;
     @Column(name = "saml_report")
     private String samlReport;
+    @Column(name = "saml_issue_date")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date samlIssueDate;
+    @Column(name = "saml_hash")
+    private String samlHash;
     @Column(name = "created_date")
     @Temporal(TemporalType.TIMESTAMP)
     private Date createdDate;
@@ -165,12 +176,29 @@ public class AhHost implements Serializable {
 	this.trustTagsJson = trustTagsJson;
     }
 
+    /**
+     * The column is a timestamp; the property keeps its ISO 8601 (UTC) string
+     * form so the REST representation of the host does not change.
+     */
     public String getValidTo() {
-	return validTo;
+	return formatValidTo(validTo);
+    }
+
+    static String formatValidTo(Date validTo) {
+	if (validTo == null) {
+	    return null;
+	}
+	Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+	calendar.setTime(validTo);
+	return DatatypeConverter.printDateTime(calendar);
     }
 
     public void setValidTo(String validTo) {
-	this.validTo = validTo;
+	if (validTo == null || validTo.trim().isEmpty()) {
+	    this.validTo = null;
+	    return;
+	}
+	this.validTo = DatatypeConverter.parseDateTime(validTo.trim()).getTime();
     }
 
     public String getSamlReport() {
@@ -181,6 +209,26 @@ public class AhHost implements Serializable {
 	this.samlReport = samlReport;
     }
 
+    public Date getSamlIssueDate() {
+	return samlIssueDate;
+    }
+
+    public void setSamlIssueDate(Date samlIssueDate) {
+	this.samlIssueDate = samlIssueDate;
+    }
+
+    /**
+     * SHA-256 of the SAML report the valid to and issue dates were extracted
+     * from, or null if the report has not been verified yet
+     */
+    public String getSamlHash() {
+	return samlHash;
+    }
+
+    public void setSamlHash(String samlHash) {
+	this.samlHash = samlHash;
+    }
+
     public Date getCreatedDate() {
 	return createdDate;
     }
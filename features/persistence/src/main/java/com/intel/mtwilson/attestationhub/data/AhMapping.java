@@ -37,7 +37,11 @@ import org.eclipse.persistence.annotations.UuidGenerator;
 	@NamedQuery(name = "AhMapping.findByCreatedBy", query = "SELECT a FROM AhMapping a WHERE a.createdBy = :createdBy"),
 	@NamedQuery(name = "AhMapping.findByModifiedDate", query = "SELECT a FROM AhMapping a WHERE a.modifiedDate = :modifiedDate"),
 	@NamedQuery(name = "AhMapping.findByModifiedBy", query = "SELECT a FROM AhMapping a WHERE a.modifiedBy = :modifiedBy"),
-	@NamedQuery(name = "AhMapping.findByDeleted", query = "SELECT a FROM AhMapping a WHERE a.deleted = :deleted") })
+	@NamedQuery(name = "AhMapping.findByDeleted", query = "SELECT a FROM AhMapping a WHERE a.deleted = :deleted"),
+	@NamedQuery(name = "AhMapping.findActiveHostsOfActiveTenants", query = "SELECT NEW com.intel.mtwilson.attestationhub.data.AhPublishedHost(t.id, m.id, h.id, h.hardwareUuid, h.hostName, h.trustTagsJson, h.validTo, h.trusted, h.assetTags, h.hardwareFeatures, h.modifiedDate) "
+		+ "FROM AhMapping m JOIN m.tenant t, AhHost h "
+		+ "WHERE upper(h.hardwareUuid) = upper(m.hostHardwareUuid) AND (m.deleted IS NULL OR m.deleted = false) "
+		+ "AND (t.deleted IS NULL OR t.deleted = false) AND (h.deleted IS NULL OR h.deleted = false) ORDER BY t.id, m.id") })
 public class AhMapping implements Serializable {
     private static final long serialVersionUID = 1L;
     @Id
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.attestationhub.data;
+
+import java.io.Serializable;
+import java.util.Date;
+import javax.persistence.Basic;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Records what was last published to a plugin of a tenant: a digest over the
+ * whole host set and the digest of every host, as a JSON object keyed by host
+ * id, so that a later publish can be skipped or limited to the changed hosts.
+ */
+@Entity
+@Table(name = "ah_publish_watermark")
+@XmlRootElement
+@NamedQueries({
+        @NamedQuery(name = "AhPublishWatermark.findAll", query = "SELECT a FROM AhPublishWatermark a"),
+        @NamedQuery(name = "AhPublishWatermark.findByTenantIdAndPluginName", query = "SELECT a FROM AhPublishWatermark a WHERE a.tenantId = :tenantId and a.pluginName = :pluginName"),
+        @NamedQuery(name = "AhPublishWatermark.deleteByTenantId", query = "DELETE FROM AhPublishWatermark a WHERE a.tenantId = :tenantId")})
+public class AhPublishWatermark implements Serializable {
+    private static final long serialVersionUID = 1L;
+    @Id
+    @Basic(optional = false)
+    @Column(name = "id")
+    private String id;
+    @Column(name = "tenant_id")
+    private String tenantId;
+    @Column(name = "plugin_name")
+    private String pluginName;
+    @Column(name = "digest")
+    private String digest;
+    @Column(name = "host_digests")
+    private String hostDigests;
+    @Column(name = "published_ts")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date publishedTs;
+    @Column(name = "full_sync_ts")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date fullSyncTs;
+
+    public AhPublishWatermark() {
+    }
+
+    public AhPublishWatermark(String id) {
+        this.id = id;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getTenantId() {
+        return tenantId;
+    }
+
+    public void setTenantId(String tenantId) {
+        this.tenantId = tenantId;
+    }
+
+    public String getPluginName() {
+        return pluginName;
+    }
+
+    public void setPluginName(String pluginName) {
+        this.pluginName = pluginName;
+    }
+
+    public String getDigest() {
+        return digest;
+    }
+
+    public void setDigest(String digest) {
+        this.digest = digest;
+    }
+
+    public String getHostDigests() {
+        return hostDigests;
+    }
+
+    public void setHostDigests(String hostDigests) {
+        this.hostDigests = hostDigests;
+    }
+
+    public Date getPublishedTs() {
+        return publishedTs;
+    }
+
+    public void setPublishedTs(Date publishedTs) {
+        this.publishedTs = publishedTs;
+    }
+
+    public Date getFullSyncTs() {
+        return fullSyncTs;
+    }
+
+    public void setFullSyncTs(Date fullSyncTs) {
+        this.fullSyncTs = fullSyncTs;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        hash += (id != null ? id.hashCode() : 0);
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (!(object instanceof AhPublishWatermark)) {
+            return false;
+        }
+        AhPublishWatermark other = (AhPublishWatermark) object;
+        if ((this.id == null && other.id != null) || (this.id != null && !this.id.equals(other.id))) {
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "com.intel.mtwilson.attestationhub.data.AhPublishWatermark[ id=" + id + " Tenant=" + tenantId + " Plugin=" + pluginName + " ]";
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.mtwilson.attestationhub.data;
+
+import java.util.Date;
+
+/**
+ * The columns of an active host needed to publish it to the plugins of a
+ * tenant it is mapped to. Instances are created by a JPQL constructor
+ * expression and are not managed by the persistence context.
+ */
+public class AhPublishedHost {
+    private final String tenantId;
+    private final String mappingId;
+    private final String id;
+    private final String hardwareUuid;
+    private final String hostName;
+    private final String trustTagsJson;
+    private final Date validTo;
+    private final Boolean trusted;
+    private final String assetTags;
+    private final String hardwareFeatures;
+    private final Date modifiedDate;
+
+    public AhPublishedHost(String tenantId, String mappingId, String id, String hardwareUuid, String hostName,
+	    String trustTagsJson, Date validTo, Boolean trusted, String assetTags, String hardwareFeatures,
+	    Date modifiedDate) {
+	this.tenantId = tenantId;
+	this.mappingId = mappingId;
+	this.id = id;
+	this.hardwareUuid = hardwareUuid;
+	this.hostName = hostName;
+	this.trustTagsJson = trustTagsJson;
+	this.validTo = validTo;
+	this.trusted = trusted;
+	this.assetTags = assetTags;
+	this.hardwareFeatures = hardwareFeatures;
+	this.modifiedDate = modifiedDate;
+    }
+
+    public String getTenantId() {
+	return tenantId;
+    }
+
+    public String getMappingId() {
+	return mappingId;
+    }
+
+    public String getId() {
+	return id;
+    }
+
+    public String getHardwareUuid() {
+	return hardwareUuid;
+    }
+
+    public String getHostName() {
+	return hostName;
+    }
+
+    public String getTrustTagsJson() {
+	return trustTagsJson;
+    }
+
+    /**
+     * @return the valid to date in the ISO 8601 (UTC) form used by
+     *         {@link AhHost#getValidTo()}
+     */
+    public String getValidTo() {
+	return AhHost.formatValidTo(validTo);
+    }
+
+    public Boolean getTrusted() {
+	return trusted;
+    }
+
+    public String getAssetTags() {
+	return assetTags;
+    }
+
+    public String getHardwareFeatures() {
+	return hardwareFeatures;
+    }
+
+    public Date getModifiedDate() {
+	return modifiedDate;
+    }
+}
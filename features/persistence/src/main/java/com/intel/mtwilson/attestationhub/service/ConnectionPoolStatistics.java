@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.mtwilson.attestationhub.service;
+
+/**
+ * Point in time view of the attestation hub database connection pool
+ */
+public class ConnectionPoolStatistics {
+    private int activeConnections;
+    private int idleConnections;
+    private int totalConnections;
+    private int threadsAwaitingConnection;
+    private int maximumPoolSize;
+
+    public int getActiveConnections() {
+	return activeConnections;
+    }
+
+    public void setActiveConnections(int activeConnections) {
+	this.activeConnections = activeConnections;
+    }
+
+    public int getIdleConnections() {
+	return idleConnections;
+    }
+
+    public void setIdleConnections(int idleConnections) {
+	this.idleConnections = idleConnections;
+    }
+
+    public int getTotalConnections() {
+	return totalConnections;
+    }
+
+    public void setTotalConnections(int totalConnections) {
+	this.totalConnections = totalConnections;
+    }
+
+    public int getThreadsAwaitingConnection() {
+	return threadsAwaitingConnection;
+    }
+
+    public void setThreadsAwaitingConnection(int threadsAwaitingConnection) {
+	this.threadsAwaitingConnection = threadsAwaitingConnection;
+    }
+
+    public int getMaximumPoolSize() {
+	return maximumPoolSize;
+    }
+
+    public void setMaximumPoolSize(int maximumPoolSize) {
+	this.maximumPoolSize = maximumPoolSize;
+    }
+
+    @Override
+    public String toString() {
+	return "active=" + activeConnections + ", idle=" + idleConnections + ", total=" + totalConnections
+		+ ", awaiting=" + threadsAwaitingConnection + ", max=" + maximumPoolSize;
+    }
+}
@@ -7,11 +7,14 @@ package com.intel.mtwilson.attestationhub.service;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Properties;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
 
+import org.eclipse.persistence.config.BatchWriting;
+import org.eclipse.persistence.config.PersistenceUnitProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -20,35 +23,44 @@ import com.intel.mtwilson.Folders;
 import com.intel.mtwilson.attestationhub.common.Constants;
 import com.intel.mtwilson.attestationhub.controller.AhHostJpaController;
 import com.intel.mtwilson.attestationhub.controller.AhMappingJpaController;
+import com.intel.mtwilson.attestationhub.controller.AhPublishWatermarkJpaController;
 import com.intel.mtwilson.attestationhub.controller.AhTenantJpaController;
 import com.intel.mtwilson.attestationhub.controller.AhTenantPluginCredentialJpaController;
 import com.intel.mtwilson.configuration.ConfigurationFactory;
 import com.intel.mtwilson.configuration.ConfigurationProvider;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 
+/**
+ * Hands out the JPA controllers of the attestation hub. All controllers share
+ * a single EntityManagerFactory per process which is backed by a pooled JDBC
+ * data source. The pool is sized from attestation-hub.properties and is
+ * closed when the JVM shuts down.
+ */
 public class PersistenceServiceFactory {
     private static final Logger log = LoggerFactory.getLogger(PersistenceServiceFactory.class);
 
-    private EntityManagerFactory entityManagerFactory;
-    private static Properties jpaProperties;
+    private static final String POOL_NAME = "attestation-hub-db-pool";
+    private static final int DEFAULT_POOL_MIN_SIZE = 2;
+    private static final int DEFAULT_POOL_MAX_SIZE = 20;
+    private static final long DEFAULT_POOL_IDLE_TIMEOUT = 600000;
+    private static final long DEFAULT_POOL_LEAK_DETECTION_THRESHOLD = 0;
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    private static final PersistenceServiceFactory persistenceServiceFactory = new PersistenceServiceFactory();
+    private static Configuration loadedConfiguration;
+    private static HikariDataSource dataSource;
+    private static EntityManagerFactory entityManagerFactory;
+    private static boolean shutdownHookRegistered = false;
 
     static {
 	File hubPropertiesFile = new File(
 		Folders.configuration() + File.separator + Constants.ATTESTATION_HUB_PROPRRTIES_FILE_NAME);
 	ConfigurationProvider provider;
-	jpaProperties = new Properties();
 	try {
 	    provider = ConfigurationFactory.createConfigurationProvider(hubPropertiesFile);
-	    Configuration loadedConfiguration = provider.load();
-	    jpaProperties.put("javax.persistence.jdbc.driver",
-		    loadedConfiguration.get(Constants.ATTESTATION_HUB_DB_DRIVER));
-	    jpaProperties.put("javax.persistence.jdbc.url", loadedConfiguration.get(Constants.ATTESTATION_HUB_DB_URL));
-	    jpaProperties.put("javax.persistence.jdbc.user",
-		    loadedConfiguration.get(Constants.ATTESTATION_HUB_DB_USERNAME));
-	    jpaProperties.put("javax.persistence.jdbc.password",
-		    loadedConfiguration.get(Constants.ATTESTATION_HUB_DB_PASSWORD));
-		jpaProperties.put("javax.persistence.jdbc.sslmode", loadedConfiguration.get(Constants.ATTESTATION_HUB_DB_SSLMODE));
-		jpaProperties.put("javax.persistence.jdbc.sslrootcert", loadedConfiguration.get(Constants.ATTESTATION_HUB_DB_SSLROOTCERT));
-
+	    loadedConfiguration = provider.load();
 	} catch (IOException e1) {
 	    log.error("Failed to fetch database properties from {}", Constants.ATTESTATION_HUB_PROPRRTIES_FILE_NAME,
 		    e1);
@@ -57,34 +69,151 @@ public class PersistenceServiceFactory {
     }
 
     public static PersistenceServiceFactory getInstance() {
-	return new PersistenceServiceFactory();
+	return persistenceServiceFactory;
     }
 
     public AhTenantJpaController getTenantController() {
 	log.debug("initializing the tenant controller");
-	entityManagerFactory = Persistence.createEntityManagerFactory(Constants.ATTESTATION_HUB_DATABASE_NAME,
-		jpaProperties);
-	return new AhTenantJpaController(entityManagerFactory);
+	return new AhTenantJpaController(getEntityManagerFactory());
     }
 
     public AhHostJpaController getHostController() {
 	log.debug("initializing the host controller");
-	entityManagerFactory = Persistence.createEntityManagerFactory(Constants.ATTESTATION_HUB_DATABASE_NAME,
-		jpaProperties);
-	return new AhHostJpaController(entityManagerFactory);
+	return new AhHostJpaController(getEntityManagerFactory());
     }
 
     public AhMappingJpaController getTenantToHostMappingController() {
 	log.debug("initializing the mapping controller");
-	entityManagerFactory = Persistence.createEntityManagerFactory(Constants.ATTESTATION_HUB_DATABASE_NAME,
-		jpaProperties);
-	return new AhMappingJpaController(entityManagerFactory);
+	return new AhMappingJpaController(getEntityManagerFactory());
     }
 
 	public AhTenantPluginCredentialJpaController getTenantPluginCredentialController() {
 		log.debug("initializing the tenant plugin credential controller");
-		entityManagerFactory = Persistence.createEntityManagerFactory(Constants.ATTESTATION_HUB_DATABASE_NAME,
-				jpaProperties);
-		return new AhTenantPluginCredentialJpaController(entityManagerFactory);
+		return new AhTenantPluginCredentialJpaController(getEntityManagerFactory());
+	}
+
+    public AhPublishWatermarkJpaController getPublishWatermarkController() {
+	log.debug("initializing the publish watermark controller");
+	return new AhPublishWatermarkJpaController(getEntityManagerFactory());
+    }
+
+    /**
+     * Returns a snapshot of the connection pool usage, or null if the pool has
+     * not been started yet.
+     */
+    public static synchronized ConnectionPoolStatistics getConnectionPoolStatistics() {
+	if (dataSource == null || dataSource.isClosed()) {
+	    return null;
+	}
+	HikariPoolMXBean poolMXBean = dataSource.getHikariPoolMXBean();
+	if (poolMXBean == null) {
+	    return null;
+	}
+	ConnectionPoolStatistics statistics = new ConnectionPoolStatistics();
+	statistics.setActiveConnections(poolMXBean.getActiveConnections());
+	statistics.setIdleConnections(poolMXBean.getIdleConnections());
+	statistics.setTotalConnections(poolMXBean.getTotalConnections());
+	statistics.setThreadsAwaitingConnection(poolMXBean.getThreadsAwaitingConnection());
+	statistics.setMaximumPoolSize(dataSource.getMaximumPoolSize());
+	return statistics;
+    }
+
+    /**
+     * Closes the shared EntityManagerFactory and the underlying connection
+     * pool. A later call to any of the controller getters starts them again.
+     */
+    public static synchronized void close() {
+	if (entityManagerFactory != null && entityManagerFactory.isOpen()) {
+	    log.info("Closing the attestation hub entity manager factory");
+	    entityManagerFactory.close();
+	}
+	entityManagerFactory = null;
+	if (dataSource != null && !dataSource.isClosed()) {
+	    log.info("Closing the attestation hub database connection pool");
+	    dataSource.close();
+	}
+	dataSource = null;
+    }
+
+    private static synchronized EntityManagerFactory getEntityManagerFactory() {
+	if (entityManagerFactory != null && entityManagerFactory.isOpen()) {
+	    return entityManagerFactory;
+	}
+	close();
+	log.info("Creating the attestation hub entity manager factory");
+	dataSource = createDataSource();
+	Map<String, Object> jpaProperties = new HashMap<>();
+	jpaProperties.put(PersistenceUnitProperties.NON_JTA_DATASOURCE, dataSource);
+	jpaProperties.put(PersistenceUnitProperties.BATCH_WRITING, BatchWriting.JDBC);
+	jpaProperties.put(PersistenceUnitProperties.BATCH_WRITING_SIZE,
+		String.valueOf(getNumericProperty(Constants.ATTESTATION_HUB_DB_BATCH_SIZE, DEFAULT_BATCH_SIZE)));
+	entityManagerFactory = Persistence.createEntityManagerFactory(Constants.ATTESTATION_HUB_DATABASE_NAME,
+		jpaProperties);
+	if (!shutdownHookRegistered) {
+	    Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+		@Override
+		public void run() {
+		    close();
+		}
+	    }, "attestation-hub-persistence-shutdown"));
+	    shutdownHookRegistered = true;
+	}
+	return entityManagerFactory;
+    }
+
+    private static HikariDataSource createDataSource() {
+	HikariConfig config = new HikariConfig();
+	config.setPoolName(POOL_NAME);
+	config.setDriverClassName(getProperty(Constants.ATTESTATION_HUB_DB_DRIVER));
+	config.setJdbcUrl(getProperty(Constants.ATTESTATION_HUB_DB_URL));
+	config.setUsername(getProperty(Constants.ATTESTATION_HUB_DB_USERNAME));
+	config.setPassword(getProperty(Constants.ATTESTATION_HUB_DB_PASSWORD));
+	String sslMode = getProperty(Constants.ATTESTATION_HUB_DB_SSLMODE);
+	if (sslMode != null && !sslMode.trim().isEmpty()) {
+	    config.addDataSourceProperty("sslmode", sslMode);
+	}
+	String sslRootCert = getProperty(Constants.ATTESTATION_HUB_DB_SSLROOTCERT);
+	if (sslRootCert != null && !sslRootCert.trim().isEmpty()) {
+	    config.addDataSourceProperty("sslrootcert", sslRootCert);
+	}
+
+	int minSize = (int) getNumericProperty(Constants.ATTESTATION_HUB_DB_POOL_MIN_SIZE, DEFAULT_POOL_MIN_SIZE);
+	int maxSize = (int) getNumericProperty(Constants.ATTESTATION_HUB_DB_POOL_MAX_SIZE, DEFAULT_POOL_MAX_SIZE);
+	if (maxSize < 1) {
+	    log.error("Invalid database pool max size configured: {}. Defaulting to {}", maxSize, DEFAULT_POOL_MAX_SIZE);
+	    maxSize = DEFAULT_POOL_MAX_SIZE;
 	}
+	if (minSize < 0 || minSize > maxSize) {
+	    log.error("Invalid database pool min size configured: {}. Defaulting to {}", minSize, Math.min(DEFAULT_POOL_MIN_SIZE, maxSize));
+	    minSize = Math.min(DEFAULT_POOL_MIN_SIZE, maxSize);
+	}
+	config.setMinimumIdle(minSize);
+	config.setMaximumPoolSize(maxSize);
+	config.setIdleTimeout(getNumericProperty(Constants.ATTESTATION_HUB_DB_POOL_IDLE_TIMEOUT, DEFAULT_POOL_IDLE_TIMEOUT));
+	config.setLeakDetectionThreshold(getNumericProperty(Constants.ATTESTATION_HUB_DB_POOL_LEAK_DETECTION_THRESHOLD,
+		DEFAULT_POOL_LEAK_DETECTION_THRESHOLD));
+	config.setRegisterMbeans(true);
+	log.info("Database connection pool size min: {} max: {}", minSize, maxSize);
+	return new HikariDataSource(config);
+    }
+
+    private static String getProperty(String key) {
+	if (loadedConfiguration == null) {
+	    return null;
+	}
+	return loadedConfiguration.get(key);
+    }
+
+    private static long getNumericProperty(String key, long defaultValue) {
+	String value = getProperty(key);
+	if (value == null || value.trim().isEmpty()) {
+	    return defaultValue;
+	}
+	try {
+	    return Long.parseLong(value.trim());
+	} catch (NumberFormatException e) {
+	    log.error("Invalid value configured for {}: {}. Defaulting to {}", key, value, defaultValue);
+	    return defaultValue;
+	}
+    }
 }
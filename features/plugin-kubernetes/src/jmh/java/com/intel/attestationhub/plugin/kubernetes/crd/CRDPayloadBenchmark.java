@@ -0,0 +1,183 @@
+/**
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.attestationhub.plugin.kubernetes.crd;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
+import com.intel.attestationhub.api.HostDetails;
+import com.intel.attestationhub.api.PublishData;
+import com.intel.attestationhub.plugin.kubernetes.crd.platform.HostAttributesCRD;
+import com.intel.attestationhub.plugin.kubernetes.crd.platform.HostAttributesMetadata;
+import com.intel.attestationhub.plugin.kubernetes.crd.platform.HostAttributesSpec;
+import com.intel.mtwilson.attestationhub.exception.AttestationHubException;
+
+/**
+ * Compares publishing the HostAttributes object of a tenant as a JSON string,
+ * which the client parses again to find the object name, with publishing the
+ * typed CRDPayload, which is serialised straight into the digest and the
+ * request body. The request body is written to a null stream, no HTTP call is
+ * made. Both paths publish a single object per tenant.
+ *
+ * Run with: mvn -Pjmh compile exec:exec, which passes -prof gc to JMH.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CRDPayloadBenchmark {
+	private static final String TENANT_ID = "72B99FA9-8FBB-4F20-B988-3990EB4410DA";
+
+	@Param({ "200", "1000" })
+	private int hostCount;
+
+	private PublishData data;
+	private CRDManager crdManager;
+	private OutputStream requestBody;
+
+	@Setup
+	public void setup() {
+		data = new PublishData();
+		data.tenantId = TENANT_ID;
+		data.hostDetailsList = new ArrayList<>(hostCount);
+		for (int i = 0; i < hostCount; i++) {
+			HostDetails hostDetails = new HostDetails();
+			hostDetails.hostname = "host-" + i;
+			hostDetails.uuid = UUID.randomUUID().toString();
+			hostDetails.trust_report = "{\"trust\":{\"bios\":true,\"vmm\":true,\"location\":true},\"hostname\":\"host-"
+					+ i + "\",\"valid_to\":\"2019-06-07T20:41:29.059Z\",\"trusted\":true,"
+					+ "\"asset_tags\":{\"country\":[\"US\"],\"state\":[\"OR\"],\"city\":[\"Hillsboro\"]}}";
+			hostDetails.signed_trust_report = signedReport(i);
+			data.hostDetailsList.add(hostDetails);
+		}
+		crdManager = new CRDManager(Integer.MAX_VALUE);
+		requestBody = ByteStreams.nullOutputStream();
+	}
+
+	/**
+	 * The JSON string path: the generator serialises the object, the client
+	 * parses it again for the object name, hashes the string and sends its
+	 * bytes.
+	 */
+	@Benchmark
+	public void publishJsonString(Blackhole blackhole) throws AttestationHubException, IOException {
+		String json = createJsonCRD(data.hostDetailsList, data.tenantId, CRDManager.getObjectName(data.tenantId));
+		JsonObject jsonObject = new JsonParser().parse(json).getAsJsonObject();
+		blackhole.consume(jsonObject.getAsJsonObject("metadata").get("name").toString().replace("\"", ""));
+		blackhole.consume(Hashing.sha256().hashString(json, StandardCharsets.UTF_8).toString());
+		requestBody.write(json.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * The typed path: the payload carries its name and is serialised into the
+	 * digest and the request body.
+	 */
+	@Benchmark
+	public void publishPayload(Blackhole blackhole) throws AttestationHubException, IOException {
+		for (CRDPayload payload : crdManager.generateCrd(data)) {
+			blackhole.consume(payload.getName());
+			blackhole.consume(payload.digest());
+			payload.writeTo(requestBody);
+		}
+	}
+
+	private static String signedReport(int i) {
+		StringBuilder builder = new StringBuilder();
+		Random random = new Random(i);
+		while (builder.length() < 1500) {
+			builder.append(Long.toHexString(random.nextLong()));
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * HostAttributesCRDGenerator.createCRD as it was when it returned the JSON
+	 * string of the object.
+	 */
+	private static String createJsonCRD(List<HostDetails> details, String tenantId, String name)
+			throws AttestationHubException {
+		HostAttributesSpec attributesSpec = new HostAttributesSpec();
+		for (HostDetails hostDetails : details) {
+			JsonObject jsonObject = new JsonParser().parse(hostDetails.trust_report).getAsJsonObject();
+			JsonElement validTo = jsonObject.get(Constants.VALID_TO);
+			JsonElement hostName = jsonObject.get(Constants.HOSTNAME);
+			String signedReport = hostDetails.signed_trust_report;
+			if (validTo == null || hostName == null || signedReport.isEmpty()) {
+				throw new AttestationHubException(
+						"Error: Empty trust_report fields- valid_to or hostname or signed_trust_report");
+			}
+			JsonElement trusted = jsonObject.get(Constants.TRUSTED);
+			if (trusted == null) {
+				throw new AttestationHubException("Error: Trusted field does not exists");
+			}
+			AbstractMap.SimpleEntry<Map<String, String>, Boolean> simpleEntry = checkAssetTags(jsonObject);
+			if (simpleEntry != null && simpleEntry.getValue()) {
+				attributesSpec.createSpecField(hostName, trusted, validTo, signedReport, simpleEntry.getKey());
+			}else{
+				attributesSpec.createSpecField(hostName, trusted, validTo, signedReport, null);
+			}
+		}
+		HostAttributesCRD crd = null;
+		if (attributesSpec.getHostList() != null) {
+			HostAttributesMetadata metadata = new HostAttributesMetadata();
+			metadata.setName(name);
+			metadata.setLabels(Collections.singletonMap(Constants.TENANT_LABEL, tenantId.toLowerCase()));
+			crd = new HostAttributesCRD();
+			crd.setApiVersion(Constants.API_VERSION);
+			crd.setKind(Constants.HOSTATTRIBUTES_CRD);
+			crd.setMetadata(metadata);
+			crd.setSpec(attributesSpec);
+		}
+		return new Gson().toJson(crd);
+	}
+
+	private static AbstractMap.SimpleEntry<Map<String, String>, Boolean> checkAssetTags(JsonObject jsonObject) {
+		JsonElement jsonElement = jsonObject.get(Constants.ASSET_TAGS);
+		if (!jsonElement.toString().equals(Constants.EMPTY_ASSET_TAGS)) {
+			Map<String, ArrayList<String>> assetMap = new Gson().fromJson(jsonElement.toString(),
+					new TypeToken<HashMap<String, ArrayList<String>>>() {
+					}.getType());
+			Map<String, String> respMap = new HashMap<String, String>();
+			for (String key : assetMap.keySet()) {
+				if (assetMap.get(key).size() != Constants.ONE || !Pattern.matches(Constants.ASSET_LABEL_REGEX, key)) {
+					return new AbstractMap.SimpleEntry<Map<String, String>, Boolean>(respMap, false);
+				}
+				String val = assetMap.get(key).get(Constants.ZERO);
+				if (!Pattern.matches(Constants.ASSET_VALUE_REGEX, val)) {
+					return new AbstractMap.SimpleEntry<Map<String, String>, Boolean>(respMap, false);
+				}
+				respMap.put(key, val);
+			}
+			return new AbstractMap.SimpleEntry<Map<String, String>, Boolean>(respMap, true);
+		}
+		return null;
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.attestationhub.plugin.kubernetes;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import org.apache.http.entity.AbstractHttpEntity;
+import com.intel.attestationhub.plugin.kubernetes.crd.CRDPayload;
+
+/**
+ * Request entity serialising the CRD object straight into the connection.
+ * The entity is repeatable, every write serialises the object again. The
+ * content type is set on the request by the KubernetesConnector.
+ */
+class CRDPayloadEntity extends AbstractHttpEntity {
+	private final CRDPayload payload;
+
+	CRDPayloadEntity(CRDPayload payload) {
+		this.payload = payload;
+	}
+
+	@Override
+	public boolean isRepeatable() {
+		return true;
+	}
+
+	@Override
+	public long getContentLength() {
+		// sent chunked
+		return -1;
+	}
+
+	@Override
+	public InputStream getContent() throws IOException {
+		// only used by callers that read the entity instead of writing it
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		payload.writeTo(buffer);
+		return new ByteArrayInputStream(buffer.toByteArray());
+	}
+
+	@Override
+	public void writeTo(OutputStream outputStream) throws IOException {
+		payload.writeTo(outputStream);
+	}
+
+	@Override
+	public boolean isStreaming() {
+		return false;
+	}
+}
@@ -23,6 +23,8 @@ public class Constants {
 		public static final String OPENSTACK_PASS = "openstack.pass";
 		public static final String OPENSTACK_URI = "openstack.uri";
 		public static final String KUBERNETES_API_BEARER_TOKEN = "kubernetes.api.bearer.token";
+		public static final String KUBERNETES_CRD_UPSERT_MODE = "kubernetes.crd.upsert.mode";
+		public static final String KUBERNETES_CRD_SHARD_MAX_HOSTS = "kubernetes.crd.shard.max.hosts";
 
 	}
 
@@ -46,6 +48,13 @@ public class Constants {
 		public static final String TRUSTED = "trusted";
 		public static final String SIGNED_TRUST_REPORT = "signedTrustReport";
 		public static final String VALID_TO = "validTo";
+		public static final String UPSERT_MODE_SERVER_SIDE_APPLY = "server-side-apply";
+		public static final String MERGE_PATCH_CONTENT_TYPE = "application/merge-patch+json";
+		public static final String APPLY_PATCH_CONTENT_TYPE = "application/apply-patch+yaml";
+		public static final String APPLY_QUERY = "?fieldManager=attestation-hub&force=true";
+		public static final String TENANT_LABEL_SELECTOR = "crd.isecl.intel.com/tenant=";
+		public static final String ITEMS = "items";
+		public static final String LABEL_SELECTOR = "labelSelector";
 	}
 	
 	public static class Report {
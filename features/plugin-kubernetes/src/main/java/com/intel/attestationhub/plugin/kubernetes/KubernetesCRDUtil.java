@@ -7,145 +7,273 @@ package com.intel.attestationhub.plugin.kubernetes;
 
 import java.io.IOException;
 import java.net.URI;
-import org.apache.http.HttpEntity;
+import java.net.URISyntaxException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
+import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.util.EntityUtils;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
-import com.google.gson.JsonSyntaxException;
 import com.intel.attestationhub.plugin.kubernetes.Constants.Plugin;
+import com.intel.attestationhub.plugin.kubernetes.crd.CRDPayload;
 import com.intel.mtwilson.attestationhub.exception.AttestationHubException;
 
 /**
  * @author abhishekx.negi@intel.com
- * 
+ *
  *         This class performs the CRD object operations
  */
 public class KubernetesCRDUtil {
 	private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(KubernetesCRDUtil.class);
+	private static final int MAX_ATTEMPTS = 3;
+	private static final long CONFLICT_RETRY_DELAY_MILLIS = 500;
+	// an unchanged CRD object is still written after this time, to undo
+	// changes made to it on the Kubernetes side
+	private static final long APPLIED_DIGEST_TTL_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+	// digest of the CRD object last written to each URI
+	private static final ConcurrentMap<URI, AppliedDigest> appliedDigests = new ConcurrentHashMap<>();
+
+	private final TenantConfig tenantConfig;
+
+	protected KubernetesCRDUtil(TenantConfig tenantConfig) {
+		this.tenantConfig = tenantConfig;
+	}
 
 	/**
-	 * Manages the HTTP operations for CRD objects, that is, if the CRD object
-	 * already exists(200) then a PUT call will be performed else POST. The HTTP
-	 * operations will be performed only after get the HttpClient from
-	 * KubernetesCertificateAuthenticator class
-	 * 
-	 * 
+	 * Creates or updates the CRD object in a single request where possible.
+	 * With the default merge-patch mode the object is patched, and created
+	 * with a POST only if the patch returns 404. With the server-side-apply
+	 * mode a single apply request creates or updates it. A 409 conflict is
+	 * retried. Nothing is sent if the object equals the one last written to
+	 * the same URI. The object is serialised straight into the digest and the
+	 * request, no JSON string of it is built. The HttpClient is obtained from the
+	 * KubernetesCertificateAuthenticator class. The client is shared between
+	 * publishes, so every response is consumed to hand its connection back to
+	 * the pool.
+	 *
+	 *
 	 * When CRD does not exists. Output: { "Logged error message" : "Error:
 	 * <crd-uri> CRD does not exists"
-	 * 
+	 *
 	 * @exception: AttestationHubException
 	 *                 with the message, "Error: <crd-uri> CRD does not exists"
 	 *                 }
-	 * 
+	 *
 	 *
 	 * @param uri
 	 *            URI to be hit
 	 * @param payload
-	 *            Formatted input of the CRD object
+	 *            The CRD object
 	 */
-	protected void publishCrdToK8s(URI uri, String payload) throws AttestationHubException {
-		KubernetesConnector connector = new KubernetesConnector();
-		CloseableHttpClient httpClient = new KubernetesCertificateAuthenticator().getHttpClient();
-		HttpResponse response = getCrd(uri, connector, httpClient);
-		HttpEntity entity = response.getEntity();
-		JsonObject jsonObject = null;
+	protected void publishCrdToK8s(URI uri, CRDPayload payload) throws AttestationHubException {
+		String digest;
 		try {
-			// CRD is required to create a CRD object. Exception will occur if CRD doesn't exists.
-			jsonObject = new JsonParser().parse(EntityUtils.toString(entity)).getAsJsonObject();
-		} catch (JsonSyntaxException | IOException e) {
-			log.error("Error: " + uri + " CRD does not exists");
-			throw new AttestationHubException("Error: " + uri + " CRD does not exists");
+			digest = payload.digest();
+		} catch (IOException e) {
+			log.error("Error: Failed serialising CRD object " + payload.getName(), e);
+			throw new AttestationHubException("Error: Failed serialising CRD object " + payload.getName(), e);
 		}
-		// If CRD object already exists for a tenant then updating it else creating a new one
-		if (response.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
-			jsonObject = jsonObject.getAsJsonObject(Plugin.METADATA);
-			// Resource version is generated on K8S side after we create a CRD object. 
-			// It is required for PUT operation.
-			String resourceVersion = jsonObject.get(Plugin.RESOURCE_VERSION).toString().replace(Plugin.SLASH_COMMA,
-					Plugin.EMPTY_STRING);
-			JsonObject payloadJson = new JsonParser().parse(payload).getAsJsonObject();
-			payloadJson.getAsJsonObject(Plugin.METADATA).addProperty(Plugin.RESOURCE_VERSION, resourceVersion);
-			putCrd(uri, payloadJson.toString(), connector, httpClient);
-		} else if (response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_FOUND) {
-			postCrd(uri, payload, connector, httpClient);
+		AppliedDigest applied = appliedDigests.get(uri);
+		if (applied != null && applied.matches(digest)) {
+			log.info("Info: CRD object {} is unchanged, skipping the update", uri);
+			return;
 		}
-
+		KubernetesConnector connector = new KubernetesConnector(tenantConfig.getBearerToken());
+		CloseableHttpClient httpClient = new KubernetesCertificateAuthenticator().getHttpClient(tenantConfig);
+		boolean serverSideApply = Plugin.UPSERT_MODE_SERVER_SIDE_APPLY.equals(tenantConfig.getCrdUpsertMode());
+		for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+			int statusCode = serverSideApply ? applyCrd(uri, payload, connector, httpClient)
+					: patchCrd(uri, payload, connector, httpClient);
+			if (statusCode == HttpStatus.SC_NOT_FOUND && !serverSideApply) {
+				statusCode = postCrd(uri, payload, connector, httpClient);
+			}
+			if (statusCode == HttpStatus.SC_OK || statusCode == HttpStatus.SC_CREATED) {
+				appliedDigests.put(uri, new AppliedDigest(digest));
+				return;
+			}
+			if (statusCode == HttpStatus.SC_NOT_FOUND) {
+				appliedDigests.remove(uri);
+				log.error("Error: " + uri + " CRD does not exists");
+				throw new AttestationHubException("Error: " + uri + " CRD does not exists");
+			}
+			if (statusCode != HttpStatus.SC_CONFLICT) {
+				appliedDigests.remove(uri);
+				log.error("Error: Upsert CRD failed with code {}", statusCode);
+				throw new AttestationHubException("Error: Upsert CRD failed with code " + statusCode);
+			}
+			log.warn("Upsert of CRD object {} failed due to conflict. Attempt {} of {}", uri, attempt, MAX_ATTEMPTS);
+			try {
+				Thread.sleep(CONFLICT_RETRY_DELAY_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new AttestationHubException("Error: Interrupted while retrying the CRD upsert", e);
+			}
+		}
+		appliedDigests.remove(uri);
+		log.error("Error: Upsert CRD failed due to conflicts after {} attempts", MAX_ATTEMPTS);
+		throw new AttestationHubException("Error: Upsert CRD failed due to conflicts after " + MAX_ATTEMPTS
+				+ " attempts");
 	}
 
 	/**
-	 * Performs the HTTP PUT operation
+	 * Performs the HTTP PATCH operation with a JSON merge patch, which
+	 * replaces the spec of an existing CRD object
 	 *
-	 * When the response recieved other than 200 Output: { "Logged error
-	 * message" : "Error: Put CRD failed with code <response-code>"
-	 * 
-	 * @exception: AttestationHubException
-	 *                 with the message, "Error: Put CRD failed with code
-	 *                 <response-code>" }
-	 * 
+	 * @return the HTTP status code received
+	 */
+	private int patchCrd(URI uri, CRDPayload payload, KubernetesConnector connector, CloseableHttpClient httpClient)
+			throws AttestationHubException {
+		HttpResponse httpResponse = connector.patch(httpClient, uri,
+				new CRDPayloadEntity(payload), Plugin.MERGE_PATCH_CONTENT_TYPE);
+		EntityUtils.consumeQuietly(httpResponse.getEntity());
+		return httpResponse.getStatusLine().getStatusCode();
+	}
+
+	/**
+	 * Performs the HTTP PATCH operation as a server-side apply, which creates
+	 * the CRD object or updates it. The hub forces its ownership of the
+	 * fields it sets.
 	 *
-	 * @param uri
-	 *            URI to be hit
-	 * @param payload
-	 *            Formatted input of the CRD object
-	 * @param connector
-	 *            KubernetesConnector class object
-	 * @param httpClient
-	 *            CloseableHttpClient for HTTP operations
+	 * @return the HTTP status code received
 	 */
-	private void putCrd(URI uri, String payload, KubernetesConnector connector, CloseableHttpClient httpClient)
+	private int applyCrd(URI uri, CRDPayload payload, KubernetesConnector connector, CloseableHttpClient httpClient)
 			throws AttestationHubException {
-		HttpResponse httpResponse = connector.put(httpClient, uri, payload);
-		if (httpResponse.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
-			log.error("Error: Put CRD failed with code", httpResponse.getStatusLine());
-			throw new AttestationHubException("Error: Put CRD failed with code" + httpResponse.getStatusLine());
+		URI applyUri;
+		try {
+			applyUri = new URI(uri.toString() + Plugin.APPLY_QUERY);
+		} catch (URISyntaxException e) {
+			log.error("Error: Failed building endpoint URI", e);
+			throw new AttestationHubException("Error: Failed building endpoint URI", e);
 		}
+		// JSON is valid YAML
+		HttpResponse httpResponse = connector.patch(httpClient, applyUri,
+				new CRDPayloadEntity(payload), Plugin.APPLY_PATCH_CONTENT_TYPE);
+		EntityUtils.consumeQuietly(httpResponse.getEntity());
+		return httpResponse.getStatusLine().getStatusCode();
 	}
 
 	/**
 	 * Performs the HTTP POST operation
 	 *
-	 * When the response recieved other than 201 Output: { "Logged error
-	 * message" : "Error: Post CRD failed with code <response-code>"
-	 * 
-	 * @exception: AttestationHubException
-	 *                 with the message, "Error: Post CRD failed with code
-	 *                 <response-code>" }
-	 * 
-	 *
 	 * @param uri
-	 *            URI to be hit
+	 *            URI of the CRD object, the object is posted to its parent
 	 * @param payload
-	 *            Formatted input of the CRD object
+	 *            The CRD object
 	 * @param connector
 	 *            KubernetesConnector class object
 	 * @param httpClient
 	 *            CloseableHttpClient for HTTP operations
+	 * @return the HTTP status code received
 	 */
-	private void postCrd(URI uri, String payload, KubernetesConnector connector, CloseableHttpClient httpClient)
+	private int postCrd(URI uri, CRDPayload payload, KubernetesConnector connector, CloseableHttpClient httpClient)
 			throws AttestationHubException {
-		HttpResponse httpResponse = connector.post(httpClient, uri, payload);
-		if (httpResponse.getStatusLine().getStatusCode() != HttpStatus.SC_CREATED) {
-			log.error("Error: Post CRD failed with code", httpResponse.getStatusLine());
-			throw new AttestationHubException("Error: Post CRD failed with code" + httpResponse.getStatusLine());
+		String objectUri = uri.toString();
+		URI collectionUri;
+		try {
+			collectionUri = new URI(objectUri.substring(0, objectUri.lastIndexOf(Plugin.SLASH)));
+		} catch (URISyntaxException e) {
+			log.error("Error: Failed building endpoint URI", e);
+			throw new AttestationHubException("Error: Failed building endpoint URI", e);
 		}
+		HttpResponse httpResponse = connector.post(httpClient, collectionUri,
+				new CRDPayloadEntity(payload));
+		EntityUtils.consumeQuietly(httpResponse.getEntity());
+		return httpResponse.getStatusLine().getStatusCode();
 	}
 
 	/**
-	 * Performs the HTTP GET operation
-	 * 
+	 * Lists the names of the CRD objects matching the label selector
+	 *
+	 * @param collectionUri
+	 *            URI of the CRD objects of one kind
+	 * @param labelSelector
+	 *            label=value the objects must carry
+	 * @return the names of the matching objects
+	 */
+	protected Set<String> listCrdNames(URI collectionUri, String labelSelector) throws AttestationHubException {
+		URI listUri;
+		try {
+			listUri = new URIBuilder(collectionUri).addParameter(Plugin.LABEL_SELECTOR, labelSelector).build();
+		} catch (URISyntaxException e) {
+			log.error("Error: Failed building endpoint URI", e);
+			throw new AttestationHubException("Error: Failed building endpoint URI", e);
+		}
+		KubernetesConnector connector = new KubernetesConnector(tenantConfig.getBearerToken());
+		CloseableHttpClient httpClient = new KubernetesCertificateAuthenticator().getHttpClient(tenantConfig);
+		HttpResponse httpResponse = connector.get(httpClient, listUri);
+		String body;
+		try {
+			body = EntityUtils.toString(httpResponse.getEntity());
+		} catch (IOException e) {
+			log.error("Error: Failed reading the CRD objects of " + collectionUri, e);
+			throw new AttestationHubException("Error: Failed reading the CRD objects of " + collectionUri, e);
+		}
+		if (httpResponse.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+			log.error("Error: List CRD failed with code {}", httpResponse.getStatusLine());
+			throw new AttestationHubException("Error: List CRD failed with code " + httpResponse.getStatusLine());
+		}
+		Set<String> names = new HashSet<>();
+		try {
+			JsonArray items = new JsonParser().parse(body).getAsJsonObject().getAsJsonArray(Plugin.ITEMS);
+			if (items != null) {
+				for (JsonElement item : items) {
+					JsonObject metadata = item.getAsJsonObject().getAsJsonObject(Plugin.METADATA);
+					if (metadata != null && metadata.has(Plugin.NAME)) {
+						names.add(metadata.get(Plugin.NAME).getAsString());
+					}
+				}
+			}
+		} catch (JsonParseException | IllegalStateException | ClassCastException e) {
+			log.error("Error: Invalid list of CRD objects received from " + collectionUri, e);
+			throw new AttestationHubException("Error: Invalid list of CRD objects received from " + collectionUri, e);
+		}
+		return names;
+	}
+
+	/**
+	 * Performs the HTTP DELETE operation. An object that does not exist is
+	 * not an error.
+	 *
 	 * @param uri
-	 *            URI to be hit
-	 * @param connector
-	 *            KubernetesConnector class object
-	 * @param httpClient
-	 *            CloseableHttpClient for HTTP operations
-	 * @return HTTP response received
+	 *            URI of the CRD object
 	 */
-	private HttpResponse getCrd(URI uri, KubernetesConnector connector, CloseableHttpClient httpClient)
-			throws AttestationHubException {
-		return new KubernetesConnector().get(httpClient, uri);
+	protected void deleteCrd(URI uri) throws AttestationHubException {
+		appliedDigests.remove(uri);
+		KubernetesConnector connector = new KubernetesConnector(tenantConfig.getBearerToken());
+		CloseableHttpClient httpClient = new KubernetesCertificateAuthenticator().getHttpClient(tenantConfig);
+		HttpResponse httpResponse = connector.delete(httpClient, uri);
+		EntityUtils.consumeQuietly(httpResponse.getEntity());
+		int statusCode = httpResponse.getStatusLine().getStatusCode();
+		if (statusCode != HttpStatus.SC_OK && statusCode != HttpStatus.SC_ACCEPTED
+				&& statusCode != HttpStatus.SC_NOT_FOUND) {
+			log.error("Error: Delete CRD failed with code {}", httpResponse.getStatusLine());
+			throw new AttestationHubException("Error: Delete CRD failed with code " + httpResponse.getStatusLine());
+		}
+		if (statusCode != HttpStatus.SC_NOT_FOUND) {
+			log.info("Info: Deleted CRD object {}", uri);
+		}
+	}
+
+	private static class AppliedDigest {
+		private final String digest;
+		private final long appliedAt = System.currentTimeMillis();
+
+		private AppliedDigest(String digest) {
+			this.digest = digest;
+		}
+
+		private boolean matches(String currentDigest) {
+			return digest.equals(currentDigest) && System.currentTimeMillis() - appliedAt < APPLIED_DIGEST_TTL_MILLIS;
+		}
 	}
 }
@@ -12,12 +12,25 @@ import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.UnrecoverableKeyException;
+import java.nio.charset.StandardCharsets;
 import java.security.cert.CertificateException;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import javax.net.ssl.SSLContext;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.conn.ssl.SSLContexts;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import com.google.common.hash.Hashing;
 import com.intel.attestationhub.plugin.kubernetes.Constants.Plugin;
 import com.intel.mtwilson.attestationhub.exception.AttestationHubException;
 
@@ -29,7 +42,18 @@ public class KubernetesCertificateAuthenticator {
 
 	private static final org.slf4j.Logger log = org.slf4j.LoggerFactory
 			.getLogger(KubernetesCertificateAuthenticator.class);
-	TenantConfig tenant = TenantConfig.getTenantConfigObj();
+	private static final int MAX_CONNECTIONS = 20;
+	private static final int MAX_CONNECTIONS_PER_ROUTE = 10;
+	private static final int VALIDATE_AFTER_INACTIVITY_MILLIS = 2000;
+	private static final long MAX_IDLE_SECONDS = 60;
+	private static final long UNUSED_CLIENT_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+	// one pooled client per Kubernetes endpoint, keystore and keystore password,
+	// shared by all publishes so connections and TLS sessions are reused
+	private static final ConcurrentMap<String, CachedClient> clients = new ConcurrentHashMap<>();
+	// clients taken out of the cache, a concurrent publish may still be using
+	// them so they are closed only after the unused client timeout
+	private static final Queue<CachedClient> retiredClients = new ConcurrentLinkedQueue<>();
 
 	/**
 	 * Creating a connection between Kubernetes Master and the Attestation Hub
@@ -68,15 +92,50 @@ public class KubernetesCertificateAuthenticator {
 	 * @exception: AttestationHubException
 	 *                 with the message, "Error in initiating SSLContext" }
 	 * 
-	 * @param serverKeystore
-	 *            the path where the server keystore is stored on the machine
-	 * @param serverKeystorePass
-	 *            password for the server keystore
+	 * The client is cached per endpoint, keystore and keystore password and
+	 * built again when the keystore file changes. Replaced clients and clients
+	 * that were not used for a while, e.g. after the endpoint of a tenant
+	 * changed, are retired and closed once the unused client timeout has
+	 * passed, so publishes running concurrently can finish with them.
+	 *
+	 * @param tenant
+	 *            the tenant configuration holding the endpoint, the path of
+	 *            the server keystore and its password
 	 * @return a closeableHttpClient to connect Attestation Hub to Kubernetes
 	 *         Master to create CRD objects
 	 * 
 	 */
-	protected CloseableHttpClient getHttpClient() throws AttestationHubException {
+	protected CloseableHttpClient getHttpClient(TenantConfig tenant) throws AttestationHubException {
+		closeUnusedClients();
+		File truststoreFile = new File(tenant.getServerKeystore());
+		String key = tenant.getPluginApiEndpoint() + Plugin.SLASH + truststoreFile.getAbsolutePath() + Plugin.SLASH
+				+ Hashing.sha256().hashString(tenant.getServerKeystorePass(), StandardCharsets.UTF_8).toString();
+		CachedClient cached = clients.get(key);
+		if (cached != null && cached.isCurrent(truststoreFile)) {
+			cached.lastUsed = System.currentTimeMillis();
+			return cached.httpClient;
+		}
+		synchronized (clients) {
+			cached = clients.get(key);
+			if (cached == null || !cached.isCurrent(truststoreFile)) {
+				CachedClient created = createHttpClient(truststoreFile, tenant.getServerKeystorePass());
+				if (cached != null) {
+					log.info("Keystore {} changed, replacing the HTTP client of {}", truststoreFile,
+							tenant.getPluginApiEndpoint());
+					retire(cached);
+				}
+				clients.put(key, created);
+				cached = created;
+			}
+			cached.lastUsed = System.currentTimeMillis();
+			return cached.httpClient;
+		}
+	}
+
+	private CachedClient createHttpClient(File truststoreFile, String truststorePass) throws AttestationHubException {
+		// read before loading so a concurrent update of the file triggers another reload
+		long truststoreModified = truststoreFile.lastModified();
+		long truststoreLength = truststoreFile.length();
 		KeyStore truststore = null;
 		try {
 			truststore = KeyStore.getInstance(Plugin.INSTANCE_TYPE);
@@ -84,11 +143,10 @@ public class KubernetesCertificateAuthenticator {
 			log.error("Error in getting truststore instance", e);
 			throw new AttestationHubException("Error in getting truststore instance", e);
 		}
-		File truststoreFile = new File(tenant.getServerKeystore());
 		FileInputStream fisTruststore = null;
 		try {
 			fisTruststore = new FileInputStream(truststoreFile);
-			truststore.load(fisTruststore, tenant.getServerKeystorePass().toCharArray());
+			truststore.load(fisTruststore, truststorePass.toCharArray());
 		} catch (NoSuchAlgorithmException | CertificateException | IOException e) {
 			log.error("Error in reading or loading keystore", e);
 			throw new AttestationHubException("Error in reading or loading keystore", e);
@@ -112,6 +170,62 @@ public class KubernetesCertificateAuthenticator {
 
 		SSLConnectionSocketFactory sslSocketFactory = new SSLConnectionSocketFactory(sslcontext,
 				new String[] { "TLSv1.2" }, null, SSLConnectionSocketFactory.STRICT_HOSTNAME_VERIFIER);
-		return HttpClients.custom().setSSLSocketFactory(sslSocketFactory).build();
+		Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory> create()
+				.register("https", sslSocketFactory).build();
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(
+				socketFactoryRegistry);
+		connectionManager.setMaxTotal(MAX_CONNECTIONS);
+		connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_ROUTE);
+		connectionManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MILLIS);
+		CloseableHttpClient httpClient = HttpClients.custom().setConnectionManager(connectionManager)
+				.setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+				.evictIdleConnections(MAX_IDLE_SECONDS, TimeUnit.SECONDS).build();
+		return new CachedClient(httpClient, truststoreModified, truststoreLength);
+	}
+
+	private static void retire(CachedClient cached) {
+		cached.retiredAt = System.currentTimeMillis();
+		retiredClients.add(cached);
+	}
+
+	private static void closeUnusedClients() {
+		long now = System.currentTimeMillis();
+		for (Map.Entry<String, CachedClient> entry : clients.entrySet()) {
+			CachedClient cached = entry.getValue();
+			if (now - cached.lastUsed > UNUSED_CLIENT_TIMEOUT_MILLIS && clients.remove(entry.getKey(), cached)) {
+				retire(cached);
+			}
+		}
+		for (CachedClient retired : retiredClients) {
+			if (now - retired.retiredAt > UNUSED_CLIENT_TIMEOUT_MILLIS && retiredClients.remove(retired)) {
+				retired.close();
+			}
+		}
+	}
+
+	private static class CachedClient {
+		private final CloseableHttpClient httpClient;
+		private final long truststoreModified;
+		private final long truststoreLength;
+		private volatile long lastUsed = System.currentTimeMillis();
+		private volatile long retiredAt;
+
+		private CachedClient(CloseableHttpClient httpClient, long truststoreModified, long truststoreLength) {
+			this.httpClient = httpClient;
+			this.truststoreModified = truststoreModified;
+			this.truststoreLength = truststoreLength;
+		}
+
+		private boolean isCurrent(File truststoreFile) {
+			return truststoreFile.lastModified() == truststoreModified && truststoreFile.length() == truststoreLength;
+		}
+
+		private void close() {
+			try {
+				httpClient.close();
+			} catch (IOException e) {
+				log.warn("Error in closing HTTP client", e);
+			}
+		}
 	}
 }
@@ -7,9 +7,12 @@ package com.intel.attestationhub.plugin.kubernetes;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-import com.google.gson.*;
 import com.intel.attestationhub.plugin.kubernetes.Constants.Plugin;
+import com.intel.attestationhub.plugin.kubernetes.crd.CRDManager;
+import com.intel.attestationhub.plugin.kubernetes.crd.CRDPayload;
 import com.intel.mtwilson.attestationhub.exception.AttestationHubException;
 
 /**
@@ -20,9 +23,13 @@ import com.intel.mtwilson.attestationhub.exception.AttestationHubException;
 public class KubernetesClient {
 	private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(KubernetesClient.class);
 
-	TenantConfig tenantConfig = TenantConfig.getTenantConfigObj();
+	// names of the HostAttributes objects last published per endpoint and tenant
+	private static final ConcurrentMap<String, Set<String>> publishedObjectNames = new ConcurrentHashMap<>();
 
-	protected KubernetesClient() throws AttestationHubException {
+	private final TenantConfig tenantConfig;
+
+	protected KubernetesClient(TenantConfig tenantConfig) throws AttestationHubException {
+		this.tenantConfig = tenantConfig;
 		validateUrl(tenantConfig.getPluginApiEndpoint(), Plugin.URL_TYPE);
 	}
 
@@ -39,26 +46,50 @@ public class KubernetesClient {
 
 	/**
 	 * This method provides the input to build endpoint URL after determining
-	 * the type of formatted CRD object received
+	 * the type of formatted CRD object received. Once all objects are
+	 * published, HostAttributes objects of the tenant that were not part of
+	 * this publish, e.g. shards that became empty, are deleted.
 	 *
-	 * @param jsonList
-	 *            IP address of the Kubernetes Master machine, including the
-	 *            port number on which of Kubernetes cluster is running.
+	 * @param tenantId
+	 *            Tenant Id for which the CRD objects are published
+	 * @param payloads
+	 *            CRD objects generated for the tenant
 	 * 
 	 */
-	public void sendDataToEndpoint(List<String> jsonList) throws AttestationHubException {
-		for (String json : jsonList) {
-			if (!json.equals(Plugin.NULL)) {
-				JsonObject jsonObject = new JsonParser().parse(json).getAsJsonObject();
-				String tenantId = jsonObject.getAsJsonObject(Plugin.METADATA).get(Plugin.NAME).toString()
-						.replace(Plugin.SLASH_COMMA, Plugin.EMPTY_STRING);
-				String urlKind = Plugin.URL_HOSTATTRIBUTES;
-				// Create an if block for new CRD
-				// To build an URI invoke buildEndpointUri method of this class
-				URI uri = buildEndpointUri(jsonObject, tenantId, urlKind);
-				new KubernetesCRDUtil().publishCrdToK8s(uri, json);
-			}
+	public void sendDataToEndpoint(String tenantId, List<CRDPayload> payloads) throws AttestationHubException {
+		KubernetesCRDUtil crdUtil = new KubernetesCRDUtil(tenantConfig);
+		Set<String> objectNames = new HashSet<>();
+		for (CRDPayload payload : payloads) {
+			String urlKind = Plugin.URL_HOSTATTRIBUTES;
+			// Create an if block for new CRD
+			// To build an URI invoke buildEndpointUri method of this class
+			URI uri = buildEndpointUri(payload.getName(), urlKind);
+			crdUtil.publishCrdToK8s(uri, payload);
+			objectNames.add(payload.getName());
 		}
+		deleteStaleObjects(crdUtil, tenantId, objectNames);
+	}
+
+	/*
+	 * Deletes the HostAttributes objects of the tenant other than the given
+	 * ones. The cluster is only queried when the set of objects differs from
+	 * the one of the last publish of the tenant to the same endpoint.
+	 */
+	private void deleteStaleObjects(KubernetesCRDUtil crdUtil, String tenantId, Set<String> objectNames)
+			throws AttestationHubException {
+		String key = tenantConfig.getPluginApiEndpoint() + Plugin.SLASH + tenantId;
+		if (objectNames.equals(publishedObjectNames.get(key))) {
+			return;
+		}
+		Set<String> staleNames = crdUtil.listCrdNames(buildEndpointUri(null, Plugin.URL_HOSTATTRIBUTES),
+				Plugin.TENANT_LABEL_SELECTOR + tenantId.toLowerCase());
+		// objects published before they were labelled
+		staleNames.add(CRDManager.getObjectName(tenantId));
+		staleNames.removeAll(objectNames);
+		for (String staleName : staleNames) {
+			crdUtil.deleteCrd(buildEndpointUri(staleName, Plugin.URL_HOSTATTRIBUTES));
+		}
+		publishedObjectNames.put(key, objectNames);
 	}
 
 	/*
@@ -70,18 +101,19 @@ public class KubernetesClient {
 	 * @exception: AttestationHubException
 	 *                 with the message, "Error: Failed building endpoint URI
 	 *                 <uri-val>" }
-	 * @param json
-	 *            JsonObject of the CRD type
-	 * @param tenantId
-	 *            Tenant Id for which the CRD object to be created
+	 * @param name
+	 *            Name of the CRD object, or null for the collection URI
 	 * @param kind
 	 *            Type of CRD for which the endpoint URI has to be build
 	 *
 	 * @return URI after building, that is, this URI will be called for CRD
 	 *         object operations
 	 */
-	private URI buildEndpointUri(JsonObject json, String tenantId, String kind) throws AttestationHubException {
-		String urlString = tenantConfig.getPluginApiEndpoint() + Plugin.PATH + kind + Plugin.SLASH + tenantId;
+	private URI buildEndpointUri(String name, String kind) throws AttestationHubException {
+		String urlString = tenantConfig.getPluginApiEndpoint() + Plugin.PATH + kind;
+		if (name != null) {
+			urlString = urlString + Plugin.SLASH + name;
+		}
 		URI uri;
 		try {
 			uri = new URI(urlString);
@@ -92,4 +124,21 @@ public class KubernetesClient {
 		return uri;
 	}
 
+	/**
+	 * @return the number of hosts above which the HostAttributes of the tenant
+	 *         are split into several CRD objects
+	 */
+	public int getMaxHostsPerShard() {
+		String maxHosts = tenantConfig.getCrdShardMaxHosts();
+		if (maxHosts == null || maxHosts.trim().isEmpty()) {
+			return CRDManager.DEFAULT_MAX_HOSTS_PER_SHARD;
+		}
+		try {
+			return Integer.parseInt(maxHosts.trim());
+		} catch (NumberFormatException e) {
+			log.error("Error: Invalid value of {}: {}", Constants.Tenant.KUBERNETES_CRD_SHARD_MAX_HOSTS, maxHosts);
+			return CRDManager.DEFAULT_MAX_HOSTS_PER_SHARD;
+		}
+	}
+
 }
@@ -19,7 +19,6 @@ import com.intel.mtwilson.attestationhub.exception.AttestationHubException;
  */
 public class KubernetesConfig {
 	private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(KubernetesConfig.class);
-	TenantConfig tenantConfig = TenantConfig.getTenantConfigObj();
 
 	/**
 	 * It validates the tenant configuration parameters- pluginApiEndpoint,
@@ -55,6 +54,7 @@ public class KubernetesConfig {
 				throw new AttestationHubException("No configuration provided");
 			}
 
+			TenantConfig tenantConfig = new TenantConfig();
 			List<PluginProperty> properties = plugin.getProperties();
 			for (PluginProperty PluginProperty : properties) {
 				switch (PluginProperty.getKey()) {
@@ -91,6 +91,12 @@ public class KubernetesConfig {
 			                case Tenant.KUBERNETES_API_SERVER_KEYSTORE_PASSWORD:
 			                        tenantConfig.setServerKeystorePass(PluginProperty.getValue());
 						break;
+			                case Tenant.KUBERNETES_CRD_UPSERT_MODE:
+			                        tenantConfig.setCrdUpsertMode(PluginProperty.getValue());
+						break;
+			                case Tenant.KUBERNETES_CRD_SHARD_MAX_HOSTS:
+			                        tenantConfig.setCrdShardMaxHosts(PluginProperty.getValue());
+						break;
 				}
 
 			}
@@ -103,7 +109,7 @@ public class KubernetesConfig {
 				log.error("Error: Invalid tenant configuration");
 				throw new AttestationHubException("Error: Invalid tenant configuration");
 			}
-			return new KubernetesClient();
+			return new KubernetesClient(tenantConfig);
 		} catch (Exception e) {
 			log.error("Error: Invalid plugin endpoints");
 			throw new AttestationHubException("Error: Invalid plugin endpoints", e);
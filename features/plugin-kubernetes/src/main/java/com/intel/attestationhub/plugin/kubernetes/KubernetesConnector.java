@@ -11,7 +11,9 @@ import javax.ws.rs.core.MediaType;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPatch;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.entity.StringEntity;
@@ -25,6 +27,11 @@ import com.intel.mtwilson.attestationhub.exception.AttestationHubException;
  */
 public class KubernetesConnector {
 	private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(KubernetesConnector.class);
+	private final String bearerToken;
+
+	protected KubernetesConnector(String bearerToken) {
+		this.bearerToken = bearerToken;
+	}
 
 	/**
 	 * HTTP GET method
@@ -46,7 +53,7 @@ public class KubernetesConnector {
 	protected HttpResponse get(CloseableHttpClient httpClient, URI uri) throws AttestationHubException {
 		HttpResponse response = null;
 		HttpGet getRequest = new HttpGet(uri);
-		getRequest.addHeader(HttpHeaders.AUTHORIZATION, "bearer " + TenantConfig.getTenantConfigObj().getBearerToken());
+		getRequest.addHeader(HttpHeaders.AUTHORIZATION, "bearer " + bearerToken);
 		try {
 			response = httpClient.execute(getRequest);
 		} catch (IOException e) {
@@ -83,8 +90,6 @@ public class KubernetesConnector {
 	 */
 	protected HttpResponse post(CloseableHttpClient httpClient, URI uri, String crdObject)
 			throws AttestationHubException {
-		HttpPost postRequest = new HttpPost(uri);
-	
 		HttpEntity entity = null;
 		try {
 			entity = new StringEntity(crdObject);
@@ -92,9 +97,26 @@ public class KubernetesConnector {
 			log.error("Error: Unable to encode String into HttpEntity ", e);
 			throw new AttestationHubException("Error: Unable to encode String into HttpEntity ", e);
 		}
+		return post(httpClient, uri, entity);
+	}
+
+	/**
+	 * HTTP POST method sending the given entity as JSON
+	 *
+	 * @param httpClient
+	 *            CloseableHttpClient for HTTP operations
+	 * @param uri
+	 *            URI to hit
+	 * @param entity
+	 *            Entity carrying the CRD object
+	 * @return HTTP response received
+	 */
+	protected HttpResponse post(CloseableHttpClient httpClient, URI uri, HttpEntity entity)
+			throws AttestationHubException {
+		HttpPost postRequest = new HttpPost(uri);
 		postRequest.setEntity(entity);
 		postRequest.addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON);
-		postRequest.addHeader(HttpHeaders.AUTHORIZATION, "bearer "+ TenantConfig.getTenantConfigObj().getBearerToken());
+		postRequest.addHeader(HttpHeaders.AUTHORIZATION, "bearer " + bearerToken);
 		HttpResponse response = null;
 		try {
 			response = httpClient.execute(postRequest);
@@ -142,7 +164,7 @@ public class KubernetesConnector {
 		}
 		putRequest.setEntity(entity);
 		putRequest.addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON);
-		putRequest.addHeader(HttpHeaders.AUTHORIZATION, "bearer " + TenantConfig.getTenantConfigObj().getBearerToken());
+		putRequest.addHeader(HttpHeaders.AUTHORIZATION, "bearer " + bearerToken);
 		HttpResponse response = null;
 		try {
 			response = httpClient.execute(putRequest);
@@ -152,4 +174,56 @@ public class KubernetesConnector {
 		}
 		return response;
 	}
+
+	/**
+	 * HTTP PATCH method
+	 *
+	 * @param httpClient
+	 *            CloseableHttpClient for HTTP operations
+	 * @param uri
+	 *            URI to hit
+	 * @param entity
+	 *            Entity carrying the CRD object
+	 * @param contentType
+	 *            the patch type, e.g. a JSON merge patch or a server-side
+	 *            apply
+	 * @return HTTP response received
+	 */
+	protected HttpResponse patch(CloseableHttpClient httpClient, URI uri, HttpEntity entity, String contentType)
+			throws AttestationHubException {
+		HttpPatch patchRequest = new HttpPatch(uri);
+		patchRequest.setEntity(entity);
+		patchRequest.addHeader(HttpHeaders.CONTENT_TYPE, contentType);
+		patchRequest.addHeader(HttpHeaders.AUTHORIZATION, "bearer " + bearerToken);
+		HttpResponse response = null;
+		try {
+			response = httpClient.execute(patchRequest);
+		} catch (IOException e) {
+			log.error("Error: Patch method failed with exception ", e);
+			throw new AttestationHubException("Error: Patch method failed with exception ", e);
+		}
+		return response;
+	}
+
+	/**
+	 * HTTP DELETE method
+	 *
+	 * @param httpClient
+	 *            CloseableHttpClient for HTTP operations
+	 * @param uri
+	 *            URI to hit
+	 * @return HTTP response received
+	 */
+	protected HttpResponse delete(CloseableHttpClient httpClient, URI uri) throws AttestationHubException {
+		HttpDelete deleteRequest = new HttpDelete(uri);
+		deleteRequest.addHeader(HttpHeaders.AUTHORIZATION, "bearer " + bearerToken);
+		HttpResponse response = null;
+		try {
+			response = httpClient.execute(deleteRequest);
+		} catch (IOException e) {
+			log.error("Error: Delete method failed with exception ", e);
+			throw new AttestationHubException("Error: Delete method failed with exception ", e);
+		}
+		return response;
+	}
 }
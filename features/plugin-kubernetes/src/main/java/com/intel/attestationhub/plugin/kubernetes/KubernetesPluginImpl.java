@@ -6,9 +6,6 @@ package com.intel.attestationhub.plugin.kubernetes;
 
 import java.util.List;
 
-import org.apache.commons.lang.StringUtils;
-
-import com.google.gson.Gson;
 import com.intel.attestationhub.api.HostDetails;
 import com.intel.attestationhub.api.PublishData;
 import com.intel.attestationhub.api.Tenant.Plugin;
@@ -31,14 +28,8 @@ public class KubernetesPluginImpl implements EndpointPlugin {
 	 * data Attestation Hub will invoke this method and in turn it will validate
 	 * the data received.
 	 *
-	 * When received data, that is, object of PublishData class cannot be
-	 * converted into JSON. Output: { "Logged error message" : "Error: Failed
-	 * converting data into JSON"
-	 * 
-	 * @exception: AttestationHubException
-	 *                 with the message, "Error: Failed converting data into
-	 *                 JSON" } When converted data is empty. Output: { "Logged
-	 *                 error message" : "Error: No data to publish" }
+	 * When no data is received. Output: { "Logged error message" : "Error: No
+	 * data to publish" }
 	 * 
 	 * @param data
 	 *            It will contain the tenant data pushed from Attestation Hub.
@@ -49,22 +40,16 @@ public class KubernetesPluginImpl implements EndpointPlugin {
 	 */
 	@Override
 	public void pushData(PublishData data, Plugin plugin) throws AttestationHubException {
-		String jsonData;
-		try {
-			log.info("Info: Begin publishing kubernetes plugin data");
-			jsonData = new Gson().toJson(data);
-			log.info("Info: Data from attestation hub " + jsonData);
-		} catch (Exception e) {
-			log.error("Error: Failed converting data to JSON");
-			throw new AttestationHubException("Error: Failed converting data to JSON", e);
-		}
-		if (StringUtils.isBlank(jsonData)) {
+		log.info("Info: Begin publishing kubernetes plugin data");
+		if (data == null) {
 			log.error("Error: No data to publish");
 			return;
 		}
 		validatePublishData(data);
+		log.info("Info: Publishing {} hosts of tenant {}", data.hostDetailsList.size(), data.tenantId);
 		KubernetesClient kubernetesClient = new KubernetesConfig().build(plugin);
-		kubernetesClient.sendDataToEndpoint(new CRDManager().generateCrd(data));
+		kubernetesClient.sendDataToEndpoint(data.tenantId,
+				new CRDManager(kubernetesClient.getMaxHostsPerShard()).generateCrd(data));
 	}
 
 	/**
@@ -89,12 +74,12 @@ public class KubernetesPluginImpl implements EndpointPlugin {
 	 */
 	private void validatePublishData(PublishData publishData) throws AttestationHubException {
 		List<HostDetails> details = publishData.hostDetailsList;
-		if (details.size() == Constants.Plugin.ZERO) {
+		if (details == null || details.size() == Constants.Plugin.ZERO) {
 			log.error("Error: Empty host details from Attestation Hub");
 			throw new AttestationHubException("Error: Empty host details from Attestation Hub");
 		}
 		String tenantId = publishData.tenantId;
-		if (tenantId.isEmpty()) {
+		if (tenantId == null || tenantId.isEmpty()) {
 			log.error("Error: Empty TenantId field in host's detail");
 			throw new AttestationHubException("Error: Empty TenantId field in host's detail");
 		}
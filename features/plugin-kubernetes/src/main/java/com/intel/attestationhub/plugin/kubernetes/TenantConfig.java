@@ -7,7 +7,8 @@ package com.intel.attestationhub.plugin.kubernetes;
 /**
  * @author abhishekx.negi@intel.com
  *	
- * Tenant configuration class
+ * Tenant configuration class. An instance is built per publish, tenants are
+ * published concurrently.
  */
 public class TenantConfig {
 
@@ -22,19 +23,11 @@ public class TenantConfig {
 	private String openstackUsername;
 	private String openstackPass;
 	private String openstackURI;
+	private String crdUpsertMode;
+	private String crdShardMaxHosts;
 
-	private static TenantConfig tenantConfig = null;
+	public TenantConfig() {
 
-	private TenantConfig() {
-
-	}
-
-	public static TenantConfig getTenantConfigObj() {
-		if (tenantConfig == null) {
-			tenantConfig = new TenantConfig();
-			return tenantConfig;
-		}
-		return tenantConfig;
 	}
 
 	public String getOpenstackURI() {
@@ -125,4 +118,20 @@ public class TenantConfig {
 		this.serverKeystorePass = serverKeystorePass;
 	}
 
+	public String getCrdUpsertMode() {
+		return crdUpsertMode;
+	}
+
+	public void setCrdUpsertMode(String crdUpsertMode) {
+		this.crdUpsertMode = crdUpsertMode;
+	}
+
+	public String getCrdShardMaxHosts() {
+		return crdShardMaxHosts;
+	}
+
+	public void setCrdShardMaxHosts(String crdShardMaxHosts) {
+		this.crdShardMaxHosts = crdShardMaxHosts;
+	}
+
 }
@@ -10,5 +10,6 @@ import com.intel.mtwilson.attestationhub.exception.AttestationHubException;
 
 //Abstract class for CRD object to be created
 public abstract class CRDGenerator {
-	protected abstract String createCRD(List<HostDetails> details, String tenantId) throws AttestationHubException;
+	protected abstract CRDPayload createCRD(List<HostDetails> details, String tenantId, String name)
+			throws AttestationHubException;
 }
@@ -6,6 +6,7 @@ package com.intel.attestationhub.plugin.kubernetes.crd;
 
 import java.util.ArrayList;
 import java.util.List;
+import com.intel.attestationhub.api.HostDetails;
 import com.intel.attestationhub.api.PublishData;
 import com.intel.mtwilson.attestationhub.exception.AttestationHubException;
 
@@ -15,24 +16,96 @@ import com.intel.mtwilson.attestationhub.exception.AttestationHubException;
  *         Decides which CRD object will be created.
  */
 public class CRDManager {
+	public static final int DEFAULT_MAX_HOSTS_PER_SHARD = 200;
+	private final int maxHostsPerShard;
+
+	public CRDManager() {
+		this(DEFAULT_MAX_HOSTS_PER_SHARD);
+	}
+
+	/**
+	 * @param maxHostsPerShard
+	 *            the number of hosts above which the HostAttributes of a
+	 *            tenant are split into several CRD objects
+	 */
+	public CRDManager(int maxHostsPerShard) {
+		this.maxHostsPerShard = maxHostsPerShard > Constants.ZERO ? maxHostsPerShard
+				: DEFAULT_MAX_HOSTS_PER_SHARD;
+	}
 
 	/**
 	 * This method invokes the CRD generator class of the CRD object's to be
 	 * created by verifying the boolean value from the Constants file. It return
 	 * an input for creating CRD object(s).
 	 *
+	 * The hosts of a tenant are spread over a power of two number of
+	 * HostAttributes objects by the hash of their host name, so a host stays
+	 * in the same object as long as the number of objects does not change and
+	 * an update only alters the objects holding changed hosts. A tenant with
+	 * up to maxHostsPerShard hosts keeps a single object with the unsharded
+	 * name. No object is generated for a shard without hosts.
+	 *
 	 * @param data
 	 *            The tenant data received from Attestation Hub.
-	 * @return list of CRD object data to be created in a CRD object format.
+	 * @return list of CRD objects to be created, each with the tenant and
+	 *         object name it is published under.
 	 * 
 	 */
-	public List<String> generateCrd(PublishData data) throws AttestationHubException {
-		List<String> jsonList = new ArrayList<>();
-		jsonList.add(new HostAttributesCRDGenerator().createCRD(data.hostDetailsList, data.tenantId));
+	public List<CRDPayload> generateCrd(PublishData data) throws AttestationHubException {
+		List<CRDPayload> payloads = new ArrayList<>();
+		HostAttributesCRDGenerator generator = new HostAttributesCRDGenerator();
+		String objectName = getObjectName(data.tenantId);
+		int shardCount = getShardCount(data.hostDetailsList.size(), maxHostsPerShard);
+		if (shardCount == Constants.ONE) {
+			addPayload(payloads, generator.createCRD(data.hostDetailsList, data.tenantId, objectName));
+		} else {
+			List<List<HostDetails>> shards = new ArrayList<>(shardCount);
+			for (int i = 0; i < shardCount; i++) {
+				shards.add(new ArrayList<HostDetails>());
+			}
+			for (HostDetails hostDetails : data.hostDetailsList) {
+				shards.get(getShard(hostDetails, shardCount)).add(hostDetails);
+			}
+			for (int i = 0; i < shardCount; i++) {
+				if (!shards.get(i).isEmpty()) {
+					addPayload(payloads, generator.createCRD(shards.get(i), data.tenantId,
+							objectName + Constants.HYPHEN + i));
+				}
+			}
+		}
 
 		// Make an entry here for new CRD object to be created. See upper if
 		// statements
 		// for reference.
-		return jsonList;
+		return payloads;
+	}
+
+	private static void addPayload(List<CRDPayload> payloads, CRDPayload payload) {
+		if (payload != null) {
+			payloads.add(payload);
+		}
+	}
+
+	/**
+	 * @return the name of the unsharded HostAttributes object of the tenant,
+	 *         shards append their index to it
+	 */
+	public static String getObjectName(String tenantId) {
+		return tenantId.toLowerCase() + Constants.HYPHEN + Constants.CIT + Constants.HYPHEN + Constants.ATTRIBUTES
+				+ Constants.HYPHEN + Constants.OBJECT;
+	}
+
+	private static int getShardCount(int hostCount, int maxHostsPerShard) {
+		int shardCount = Constants.ONE;
+		while ((long) shardCount * maxHostsPerShard < hostCount) {
+			shardCount *= 2;
+		}
+		return shardCount;
+	}
+
+	private static int getShard(HostDetails hostDetails, int shardCount) {
+		String key = hostDetails.hostname != null ? hostDetails.hostname : hostDetails.uuid;
+		// String.hashCode is specified, so the shard of a host is stable across restarts
+		return (key.hashCode() & Integer.MAX_VALUE) % shardCount;
 	}
 }
@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+package com.intel.attestationhub.plugin.kubernetes.crd;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonWriter;
+import com.intel.attestationhub.plugin.kubernetes.crd.template.KubernetesCRD;
+
+/**
+ * A CRD object to be published for a tenant. The object is kept typed and
+ * only serialised while it is written to its destination, so no JSON string
+ * of it is built.
+ */
+public class CRDPayload {
+	private static final Gson gson = new Gson();
+
+	private final String tenantId;
+	private final String name;
+	private final KubernetesCRD crd;
+
+	public CRDPayload(String tenantId, String name, KubernetesCRD crd) {
+		this.tenantId = tenantId;
+		this.name = name;
+		this.crd = crd;
+	}
+
+	public String getTenantId() {
+		return tenantId;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Writes the CRD object as JSON in UTF-8. The stream is flushed but not
+	 * closed.
+	 */
+	public void writeTo(OutputStream outputStream) throws IOException {
+		JsonWriter jsonWriter = new JsonWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+		try {
+			gson.toJson(crd, crd.getClass(), jsonWriter);
+		} catch (JsonIOException e) {
+			throw new IOException("Error: Failed writing CRD object " + name, e);
+		}
+		jsonWriter.flush();
+	}
+
+	/**
+	 * @return the SHA-256 digest of the JSON of the CRD object, computed
+	 *         without buffering the JSON
+	 */
+	public String digest() throws IOException {
+		Hasher hasher = Hashing.sha256().newHasher();
+		writeTo(Funnels.asOutputStream(hasher));
+		return hasher.hash().toString();
+	}
+}
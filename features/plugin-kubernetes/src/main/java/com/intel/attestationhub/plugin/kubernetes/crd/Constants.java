@@ -24,4 +24,5 @@ public class Constants {
 	public static final String SPACE = " ";
 	public static final String ASSET_LABEL_REGEX = "(?:[a-zA-Z0-9_\\/\\.-]+)";
 	public static final String ASSET_VALUE_REGEX = "(?:[a-zA-Z0-9_\\.-]+)";
+	public static final String TENANT_LABEL = "crd.isecl.intel.com/tenant";
 }
@@ -7,11 +7,9 @@ package com.intel.attestationhub.plugin.kubernetes.crd;
 import java.util.*;
 import java.util.regex.Pattern;
 
-import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
-import com.google.gson.reflect.TypeToken;
 import com.intel.attestationhub.api.HostDetails;
 import com.intel.attestationhub.plugin.kubernetes.crd.platform.HostAttributesCRD;
 import com.intel.attestationhub.plugin.kubernetes.crd.platform.HostAttributesMetadata;
@@ -26,6 +24,8 @@ import com.intel.mtwilson.attestationhub.exception.AttestationHubException;
 public class HostAttributesCRDGenerator extends CRDGenerator {
 
 	private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(HostAttributesCRDGenerator.class);
+	private static final Pattern ASSET_LABEL_PATTERN = Pattern.compile(Constants.ASSET_LABEL_REGEX);
+	private static final Pattern ASSET_VALUE_PATTERN = Pattern.compile(Constants.ASSET_VALUE_REGEX);
 
 	/**
 	 * It parses the mapped host details of a tenant and fetches the variables
@@ -53,18 +53,23 @@ public class HostAttributesCRDGenerator extends CRDGenerator {
 	 * @param tenantId
 	 *            Tenant Id for which the data is received from the Attestation
 	 *            Hub
-	 * @return a formatted input for creating a HostAttributes CRD object.
+	 * @param name
+	 *            Name of the CRD object
+	 * @return the HostAttributes CRD object, serialised once it is sent, or
+	 *         null if there is no host to publish
 	 * 
 	 */
 	@Override
-	protected String createCRD(List<HostDetails> details, String tenantId) throws AttestationHubException {
+	protected CRDPayload createCRD(List<HostDetails> details, String tenantId, String name)
+			throws AttestationHubException {
 		HostAttributesSpec attributesSpec = new HostAttributesSpec();
 		for (HostDetails hostDetails : details) {
+			// the trust report is parsed once, its elements go into the CRD object as they are
 			JsonObject jsonObject = new JsonParser().parse(hostDetails.trust_report).getAsJsonObject();
 			JsonElement validTo = jsonObject.get(Constants.VALID_TO);
 			JsonElement hostName = jsonObject.get(Constants.HOSTNAME);
 			String signedReport = hostDetails.signed_trust_report;
-			if (validTo == null || hostName == null || signedReport.isEmpty()) {
+			if (validTo == null || hostName == null || signedReport == null || signedReport.isEmpty()) {
 				log.error("Error: Empty trust_report fields- valid_to or hostname or signed_trust_report");
 				throw new AttestationHubException(
 						"Error: Empty trust_report fields- valid_to or hostname or signed_trust_report");
@@ -81,18 +86,18 @@ public class HostAttributesCRDGenerator extends CRDGenerator {
 				attributesSpec.createSpecField(hostName, trusted, validTo, signedReport, null);
 			}
 		}
-		HostAttributesCRD crd = null;
-		if (attributesSpec.getHostList() != null) {
-			HostAttributesMetadata metadata = new HostAttributesMetadata();
-			metadata.setName(tenantId.toLowerCase() + Constants.HYPHEN + Constants.CIT + Constants.HYPHEN
-					+ Constants.ATTRIBUTES + Constants.HYPHEN + Constants.OBJECT);
-			crd = new HostAttributesCRD();
-			crd.setApiVersion(Constants.API_VERSION);
-			crd.setKind(Constants.HOSTATTRIBUTES_CRD);
-			crd.setMetadata(metadata);
-			crd.setSpec(attributesSpec);
+		if (attributesSpec.getHostList() == null) {
+			return null;
 		}
-		return new Gson().toJson(crd);
+		HostAttributesMetadata metadata = new HostAttributesMetadata();
+		metadata.setName(name);
+		metadata.setLabels(Collections.singletonMap(Constants.TENANT_LABEL, tenantId.toLowerCase()));
+		HostAttributesCRD crd = new HostAttributesCRD();
+		crd.setApiVersion(Constants.API_VERSION);
+		crd.setKind(Constants.HOSTATTRIBUTES_CRD);
+		crd.setMetadata(metadata);
+		crd.setSpec(attributesSpec);
+		return new CRDPayload(tenantId, name, crd);
 	}
 
 	/**
@@ -126,28 +131,27 @@ public class HostAttributesCRDGenerator extends CRDGenerator {
 	 */
 	private AbstractMap.SimpleEntry<Map<String, String>, Boolean> checkAssetTags(JsonObject jsonObject, JsonElement hostName) {
 		JsonElement jsonElement = jsonObject.get(Constants.ASSET_TAGS);
-		if (!jsonElement.toString().equals(Constants.EMPTY_ASSET_TAGS)) {
-			Map<String, ArrayList<String>> assetMap = new Gson().fromJson(jsonElement.toString(),
-					new TypeToken<HashMap<String, ArrayList<String>>>() {
-					}.getType());
+		if (jsonElement != null && jsonElement.isJsonObject() && jsonElement.getAsJsonObject().size() > Constants.ZERO) {
 			Map<String, String> respMap = new HashMap<String, String>();
-			for (String key : assetMap.keySet()) {
+			for (Map.Entry<String, JsonElement> assetTag : jsonElement.getAsJsonObject().entrySet()) {
+				String key = assetTag.getKey();
+				JsonElement values = assetTag.getValue();
 				// Checking there is only one value
-				if (assetMap.get(key).size() != Constants.ONE) {
+				if (!values.isJsonArray() || values.getAsJsonArray().size() != Constants.ONE) {
 					log.error("Error: Multiple values in asset_tag field");
 					return new AbstractMap.SimpleEntry<Map<String, String>, Boolean>(respMap, false);
 				}
 				// Checking key should not contain space and other special
 				// characters except forward slash, underscore, hyphen or dot
-				if (!Pattern.matches(Constants.ASSET_LABEL_REGEX, key)) {
+				if (!ASSET_LABEL_PATTERN.matcher(key).matches()) {
 					log.error("Error: Invalid key: " + key + "in asset_tags"
 							+ "- Value should contain only forward slash /,underscore, hyphen or dot .");
 					return new AbstractMap.SimpleEntry<Map<String, String>, Boolean>(respMap, false);
 				}
 				// Checking value should not contain space and other special
 				// characters except underscore, hyphen or dot
-				String val=assetMap.get(key).get(Constants.ZERO);
-				if (!Pattern.matches(Constants.ASSET_VALUE_REGEX,val)) {
+				String val = values.getAsJsonArray().get(Constants.ZERO).getAsString();
+				if (!ASSET_VALUE_PATTERN.matcher(val).matches()) {
 					log.error("Error: Invalid value: "+val+" of key: " + key
 							+ "- Value should contain only underscore, hyphen or dot .");
 					return new AbstractMap.SimpleEntry<Map<String, String>, Boolean>(respMap, false);
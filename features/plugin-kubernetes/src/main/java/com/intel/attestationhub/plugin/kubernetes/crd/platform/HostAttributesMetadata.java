@@ -4,6 +4,8 @@
  */
 package com.intel.attestationhub.plugin.kubernetes.crd.platform;
 
+import java.util.Map;
+
 import com.intel.attestationhub.plugin.kubernetes.crd.template.Metadata;
 
 /**
@@ -13,5 +15,15 @@ import com.intel.attestationhub.plugin.kubernetes.crd.template.Metadata;
  *         required.
  */
 public class HostAttributesMetadata extends Metadata {
+	// identify the objects of a tenant when its HostAttributes are sharded
+	private Map<String, String> labels;
+
+	public Map<String, String> getLabels() {
+		return labels;
+	}
+
+	public void setLabels(Map<String, String> labels) {
+		this.labels = labels;
+	}
 
 }
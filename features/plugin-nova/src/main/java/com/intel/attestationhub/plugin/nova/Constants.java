@@ -15,6 +15,7 @@ public class Constants {
     public static final String PASSWORD = "user.password";
     public static final String TENANT_NAME = "tenant.name";
     public static final String DOMAIN_NAME = "domain.name";
+    public static final String PLACEMENT_PARALLELISM = "placement.parallelism";
     public static final String AUTH_TOKEN = "X-AUTH-TOKEN";
     public static final int MAX_RETRIES_DUE_TO_CONFLICTS = 3;
     public static final long CONFLICT_RETRY_DELAY_IN_MILLIS = 200L;
@@ -24,17 +25,35 @@ public class Constants {
      * to process traits for other hosts.
      */
     public static final int NO_OF_FAILED_CALLS_BEFORE_FAILING_BATCH = 5;
+    // the name to resource provider index is reloaded after this time, a failed reload is retried after a minute
+    public static final long RESOURCE_PROVIDER_INDEX_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    public static final long RESOURCE_PROVIDER_INDEX_RETRY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    // the traits defined in Placement are read again after this time
+    public static final long TRAIT_CATALOGUE_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    // number of traits created concurrently
+    public static final int MAX_TRAIT_CREATION_PARALLELISM = 8;
+    // hosts with unchanged traits are checked against Placement after this time
+    public static final long TRAIT_VERIFICATION_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+    // number of hosts whose traits are mapped concurrently, unless configured for the tenant
+    public static final int DEFAULT_PLACEMENT_PARALLELISM = 8;
+    // connections to Placement shared by all tenants, which also bounds the configured parallelism
+    public static final int MAX_PLACEMENT_CONNECTIONS = 32;
     public static final int CONNECTION_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(30);
     public static final int SOCKET_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(60);
 
     public static final String PLACEMENT_API_MICROVERSION_VALUE = "placement 1.21";
     public static final String OPENSTACK_API_MICROVERSION_HEADER = "OpenStack-API-Version";
     public static final String KEYSTONE_AUTH_TOKEN_HEADER_KEY = "X-Subject-Token";
+    // Keystone tokens are renewed this long before they expire
+    public static final long KEYSTONE_TOKEN_REFRESH_MARGIN_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    // lifetime assumed for tokens without an expiry
+    public static final long KEYSTONE_TOKEN_DEFAULT_LIFETIME_MILLIS = TimeUnit.MINUTES.toMillis(30);
 
     public static final String RESOURCE_PATH_V3_AUTH_TOKEN = "/v3/auth/tokens";
 
     public static final String RESOURCE_PATH_TRAITS = "/traits";
     public static final String RESOURCE_PATH_RESOURCE_PROVIDERS = "/resource_providers/";
+    public static final String RESOURCE_PATH_RESOURCE_PROVIDERS_LIST = "/resource_providers";
     public static final String RESOURCE_PATH_RESOURCE_PROVIDERS_NAME_QUERY = "/resource_providers?name=";
 
     public static final String CIT_TRAIT_PREFIX = "CUSTOM_ISECL";
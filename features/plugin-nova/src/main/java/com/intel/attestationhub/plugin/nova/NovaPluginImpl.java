@@ -7,10 +7,10 @@ package com.intel.attestationhub.plugin.nova;
 
 import com.intel.attestationhub.api.PublishData;
 import com.intel.attestationhub.api.Tenant.Plugin;
-import com.intel.attestationhub.plugin.EndpointPlugin;
+import com.intel.attestationhub.plugin.PartialUpdateEndpointPlugin;
 import com.intel.mtwilson.attestationhub.exception.AttestationHubException;
 
-public class NovaPluginImpl implements EndpointPlugin {
+public class NovaPluginImpl implements PartialUpdateEndpointPlugin {
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(NovaPluginImpl.class);
 
     @Override
@@ -13,6 +13,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
@@ -39,20 +44,33 @@ public class NovaRsClient {
 
     private static final Logger log = LoggerFactory.getLogger(NovaRsClient.class);
 
+    // trait superset per Placement endpoint, shared by all clients
+    private static final ConcurrentMap<String, Set<String>> customTraitsSuperSets = new ConcurrentHashMap<>();
+
     private PlacementClient placementClient;
 
-    // Contains the trait version(prefix of CUSTOM_ISECL) of all the attributes encountered
-    private Set<String> customTraitsSuperSet = new HashSet<>();
+    private TraitFingerprintStore traitFingerprintStore;
+
+    // number of hosts mapped concurrently
+    private int parallelism = Constants.DEFAULT_PLACEMENT_PARALLELISM;
+
+    // Contains the trait version(prefix of CUSTOM_ISECL) of all the attributes encountered. Private to this client
+    // unless the endpoint constructor replaces it with the set shared through customTraitsSuperSets
+    private Set<String> customTraitsSuperSet = ConcurrentHashMap.newKeySet();
 
     @VisibleForTesting
     NovaRsClient() {
-
+        this.traitFingerprintStore = new TraitFingerprintStore(Constants.TRAIT_VERIFICATION_INTERVAL_MILLIS);
     }
 
     public NovaRsClient(String keystonePublicEndpoint, String projectName, String username, String password,
-            String domainName, String version) throws AttestationHubException {
+            String domainName, String version, int parallelism) throws AttestationHubException {
         this.placementClient = new PlacementClient(keystonePublicEndpoint, projectName, username, password, domainName,
                 version);
+        this.parallelism = parallelism;
+        this.traitFingerprintStore = TraitFingerprintStore.getInstance();
+        this.customTraitsSuperSet = customTraitsSuperSets.computeIfAbsent(this.placementClient.getPlacementUrl(),
+                url -> ConcurrentHashMap.newKeySet());
     }
 
     public void sendDataToEndpoint(PublishData publishData) throws AttestationHubException {
@@ -73,31 +91,49 @@ public class NovaRsClient {
         boolean anyErrorEncountered = false;
         List<String> networkErrorHosts = new ArrayList<>();
 
-        for (Entry<String, Set<String>> hostEntry : hostCustomTraitsMap.entrySet()) {
-            String hostName = hostEntry.getKey();
-            Set<String> latestCitTraits = hostEntry.getValue();
-            try {
-                log.debug("HostName: {} :: Traits: {} ", hostName, latestCitTraits);
-                ResourceProvider hostRp = this.placementClient.getResourceProvider(hostName);
-                mapHostTraits(hostRp.getUuid(), hostName, latestCitTraits, Constants.MAX_RETRIES_DUE_TO_CONFLICTS);
-                log.info("Updating traits for host {} succeeded", hostName);
-                // Reset list if we have a successful call
-                networkErrorHosts = new ArrayList<>();
-            } catch (NetworkIOException ioe) {
-                anyErrorEncountered = true;
-                networkErrorHosts.add(hostName);
-                if (networkErrorHosts.size() > Constants.NO_OF_FAILED_CALLS_BEFORE_FAILING_BATCH) {
-                    log.error(
-                            "Too many network errors encountered for the current batch of hosts: {}. Failing the entire batch.",
-                            String.join(", ", networkErrorHosts));
-                    throw new AttestationHubException(
-                            "Too many network errors encountered for the current batch of hosts. Failing the entire batch.");
+        // Hosts are mapped concurrently, the results are evaluated in the order of the hosts so the batch fails on
+        // the same consecutive network errors as if they were mapped one after the other.
+        ExecutorService executor = Utils.newFixedThreadPool("nova-trait-mapping",
+                Math.max(1, Math.min(this.parallelism, hostCustomTraitsMap.size())));
+        try {
+            Map<String, Future<Void>> hostFutures = new LinkedHashMap<>();
+            for (Entry<String, Set<String>> hostEntry : hostCustomTraitsMap.entrySet()) {
+                hostFutures.put(hostEntry.getKey(), executor.submit(() -> {
+                    mapHost(hostEntry.getKey(), hostEntry.getValue());
+                    return null;
+                }));
+            }
+
+            for (Entry<String, Future<Void>> hostFuture : hostFutures.entrySet()) {
+                String hostName = hostFuture.getKey();
+                try {
+                    hostFuture.getValue().get();
+                    log.info("Updating traits for host {} succeeded", hostName);
+                    // Reset list if we have a successful call
+                    networkErrorHosts = new ArrayList<>();
+                } catch (ExecutionException ee) {
+                    anyErrorEncountered = true;
+                    if (ee.getCause() instanceof NetworkIOException) {
+                        networkErrorHosts.add(hostName);
+                        if (networkErrorHosts.size() > Constants.NO_OF_FAILED_CALLS_BEFORE_FAILING_BATCH) {
+                            // hosts not mapped yet are dropped when the executor is shut down
+                            log.error(
+                                    "Too many network errors encountered for the current batch of hosts: {}. Failing the entire batch.",
+                                    String.join(", ", networkErrorHosts));
+                            throw new AttestationHubException(
+                                    "Too many network errors encountered for the current batch of hosts. Failing the entire batch.");
+                        }
+                    } else {
+                        log.warn("Failed to update traits for host {} due to unknown error. Will continue to process "
+                                + "other hosts.", hostName, ee.getCause());
+                    }
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new AttestationHubException("Interrupted while mapping ISECL traits to hosts", ie);
                 }
-            } catch (AttestationHubException ae) {
-                anyErrorEncountered = true;
-                log.warn("Failed to update traits for host {} due to unknown error. Will continue to process other "
-                        + "hosts.", hostName, ae);
             }
+        } finally {
+            executor.shutdownNow();
         }
 
         // Still throw an exception because few host mapping failed.
@@ -109,6 +145,22 @@ public class NovaRsClient {
         log.debug("Sending Traits Data to Nova completed");
     }
 
+    /**
+     * Maps the ISECL traits to the resource provider of the host, run by a worker thread. Placement is not contacted
+     * if the same traits were applied to the host before and it is not due for verification.
+     */
+    private void mapHost(String hostName, Set<String> latestCitTraits)
+            throws AttestationHubException, NetworkIOException {
+        log.debug("HostName: {} :: Traits: {} ", hostName, latestCitTraits);
+        ResourceProvider hostRp = this.placementClient.getResourceProvider(hostName);
+        if (this.traitFingerprintStore.isCurrent(hostRp.getUuid(), latestCitTraits)) {
+            log.debug("Skipping nova call since the traits of host {} did not change", hostName);
+            return;
+        }
+        mapHostTraits(hostRp.getUuid(), hostName, latestCitTraits, Constants.MAX_RETRIES_DUE_TO_CONFLICTS);
+        this.traitFingerprintStore.applied(hostRp.getUuid(), latestCitTraits);
+    }
+
     @VisibleForTesting
     Set<String> generateTraitsFromTrustReport(HostDetails host) throws AttestationHubException {
         log.debug("getTraitList for {} jsonString : {}", host.hostname, host.trust_report);
@@ -21,7 +21,7 @@ public class NovaRsClientBuilder {
         }
         List<PluginProperty> properties = plugin.getProperties();
         String pluginAuthEndpoint = null, pluginAuthVersion = null, userName = null, password = null, tenantName = null,
-                domainName = null;
+                domainName = null, parallelism = null;
         for (PluginProperty property : properties) {
             switch (property.getKey()) {
             case Constants.AUTH_ENDPOINT:
@@ -42,6 +42,9 @@ public class NovaRsClientBuilder {
             case Constants.TENANT_NAME:
                 tenantName = property.getValue();
                 break;
+            case Constants.PLACEMENT_PARALLELISM:
+                parallelism = property.getValue();
+                break;
             }
         }
 
@@ -53,7 +56,20 @@ public class NovaRsClientBuilder {
             throw new AttestationHubException("Please provide mandatory configuration for authorization");
         }
 
-        return new NovaRsClient(pluginAuthEndpoint, tenantName, userName, password, domainName, pluginAuthVersion);
+        return new NovaRsClient(pluginAuthEndpoint, tenantName, userName, password, domainName, pluginAuthVersion,
+                getParallelism(parallelism));
+    }
+
+    private static int getParallelism(String parallelism) {
+        if (StringUtils.isBlank(parallelism)) {
+            return Constants.DEFAULT_PLACEMENT_PARALLELISM;
+        }
+        try {
+            return Math.min(Math.max(Integer.parseInt(parallelism.trim()), 1), Constants.MAX_PLACEMENT_CONNECTIONS);
+        } catch (NumberFormatException e) {
+            log.error("Invalid value of {}: {}", Constants.PLACEMENT_PARALLELISM, parallelism);
+            return Constants.DEFAULT_PLACEMENT_PARALLELISM;
+        }
     }
 
 }
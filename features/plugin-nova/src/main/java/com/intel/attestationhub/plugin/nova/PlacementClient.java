@@ -6,8 +6,16 @@ package com.intel.attestationhub.plugin.nova;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import javax.ws.rs.core.MediaType;
 
@@ -19,9 +27,11 @@ import org.apache.http.HttpStatus;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.utils.HttpClientUtils;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,9 +39,9 @@ import org.slf4j.LoggerFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.intel.attestationhub.plugin.nova.exception.NetworkIOException;
 import com.intel.attestationhub.plugin.nova.exception.RetryPlacementCallException;
-import com.intel.attestationhub.plugin.nova.identity.IdentityService;
 import com.intel.attestationhub.plugin.nova.identity.IdentityService.EndpointType;
-import com.intel.attestationhub.plugin.nova.identity.IdentityServiceFactory;
+import com.intel.attestationhub.plugin.nova.identity.KeystoneSession;
+import com.intel.attestationhub.plugin.nova.identity.KeystoneTokenCache;
 import com.intel.attestationhub.plugin.nova.model.ResourceProvider;
 import com.intel.attestationhub.plugin.nova.model.ResourceProviderByNameResponse;
 import com.intel.attestationhub.plugin.nova.model.ResourceProviderTraits;
@@ -45,26 +55,82 @@ public class PlacementClient {
 
     private static final ObjectMapper placementMapper = new ObjectMapper();
 
-    private String authToken;
-    private IdentityService identityService;
+    private final KeystoneTokenCache tokenCache = KeystoneTokenCache.getInstance();
+    private final String keystonePublicEndpoint;
+    private final String projectName;
+    private final String username;
+    private final String password;
+    private final String domainName;
+    private final String version;
+
+    // resource providers by name per Placement endpoint, shared by all clients
+    private static final ConcurrentMap<String, ResourceProviderIndex> resourceProviderIndexes =
+            new ConcurrentHashMap<>();
+
+    // traits defined per Placement endpoint, shared by all clients
+    private static final ConcurrentMap<String, TraitCatalogue> traitCatalogues = new ConcurrentHashMap<>();
 
     // TODO: How to close clients on shutdown of server? Need a callback
+    // hosts are mapped concurrently, the default limit of two connections per route would serialise them
     private static final HttpClient httpClient = HttpClientBuilder.create()
+            .setConnectionManager(createConnectionManager()).evictIdleConnections(60, TimeUnit.SECONDS)
             .setDefaultRequestConfig(Utils.REQUEST_CONFIG).build();
 
+    private static PoolingHttpClientConnectionManager createConnectionManager() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(Constants.MAX_PLACEMENT_CONNECTIONS);
+        connectionManager.setDefaultMaxPerRoute(Constants.MAX_PLACEMENT_CONNECTIONS);
+        connectionManager.setValidateAfterInactivity(2000);
+        return connectionManager;
+    }
+
     public PlacementClient(String keystonePublicEndpoint, String projectName, String username, String password,
             String domainName, String version) throws AttestationHubException {
         Utils.validateUrl(keystonePublicEndpoint, "AUTH");
-        initIdentityService(keystonePublicEndpoint, projectName, username, password, domainName, version);
+        this.keystonePublicEndpoint = keystonePublicEndpoint;
+        this.projectName = projectName;
+        this.username = username;
+        this.password = password;
+        this.domainName = domainName;
+        this.version = version;
+        // fail early on invalid credentials
+        getSession();
     }
 
     /**
-     * Returns all traits defined in openstack.
+     * Returns the URL of the Placement endpoint of the tenant credentials.
+     */
+    public String getPlacementUrl() throws AttestationHubException {
+        return getEndpointUrl(EndpointType.PLACEMENT);
+    }
+
+    /**
+     * Returns all traits defined in openstack. The traits are read from the catalogue of the Placement endpoint,
+     * which is reloaded once it is outdated.
      */
     public Set<String> getOpenstackTraits() throws AttestationHubException {
+        TraitCatalogue catalogue = getTraitCatalogue();
+        if (catalogue.needsReload(Constants.TRAIT_CATALOGUE_TTL_MILLIS)) {
+            synchronized (catalogue) {
+                if (catalogue.needsReload(Constants.TRAIT_CATALOGUE_TTL_MILLIS)) {
+                    catalogue.reload(listOpenstackTraits());
+                }
+            }
+        }
+        return catalogue.getTraits();
+    }
+
+    private TraitCatalogue getTraitCatalogue() throws AttestationHubException {
+        return traitCatalogues.computeIfAbsent(getPlacementUrl(), url -> new TraitCatalogue());
+    }
+
+    /**
+     * Reads all traits defined in openstack.
+     */
+    private Set<String> listOpenstackTraits() throws AttestationHubException {
         Set<String> osTraits = new HashSet<>();
 
-        String url = this.identityService.getEndpointUrl(EndpointType.PLACEMENT).concat(Constants.RESOURCE_PATH_TRAITS);
+        String url = getEndpointUrl(EndpointType.PLACEMENT).concat(Constants.RESOURCE_PATH_TRAITS);
         log.debug("Getting All Traits from Nova: {} ", url);
 
         HttpResponse response = null;
@@ -104,48 +170,88 @@ public class PlacementClient {
 
     /**
      * Creates traits on openstack from the given set of trait list. This assumes the traits are defined in the format
-     * as required by openstack.
+     * as required by openstack. Traits are created concurrently and added to the catalogue once created.
      *
      * @param traitsSet the set of traits to create
-     * @throws AttestationHubException
+     * @throws AttestationHubException if any of the traits could not be created
      */
     public void createOpenstackTraits(Set<String> traitsSet) throws AttestationHubException {
-        String baseUrl = this.identityService.getEndpointUrl(EndpointType.PLACEMENT)
+        if (traitsSet.isEmpty()) {
+            return;
+        }
+        String baseUrl = getEndpointUrl(EndpointType.PLACEMENT)
                 .concat(Constants.RESOURCE_PATH_TRAITS);
+        TraitCatalogue catalogue = getTraitCatalogue();
+        List<String> traits = new ArrayList<>(traitsSet);
 
-        for (String trait : traitsSet) {
-            String url = baseUrl.concat("/").concat(trait);
-            log.debug("Creating Trait using Url : " + url);
-
-            HttpResponse response = null;
-            try {
-                response = putRequest(null, url);
+        ExecutorService executor = Utils.newFixedThreadPool("placement-trait-creation",
+                Math.min(traits.size(), Constants.MAX_TRAIT_CREATION_PARALLELISM));
+        try {
+            List<Future<Void>> futures = new ArrayList<>(traits.size());
+            for (String trait : traits) {
+                futures.add(executor.submit(() -> {
+                    createOpenstackTrait(baseUrl, trait);
+                    catalogue.add(trait);
+                    return null;
+                }));
+            }
+            // all traits are attempted, the first failure is reported
+            AttestationHubException failure = null;
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() instanceof AttestationHubException
+                                ? (AttestationHubException) e.getCause()
+                                : new AttestationHubException("Sending data to controller failed", e.getCause());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new AttestationHubException("Interrupted while creating traits", e);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        log.info("Created {} traits", traits.size());
+    }
 
-                int status = response.getStatusLine().getStatusCode();
+    private void createOpenstackTrait(String baseUrl, String trait) throws AttestationHubException {
+        String url = baseUrl.concat("/").concat(trait);
+        log.debug("Creating Trait using Url : " + url);
 
-                if (!(HttpStatus.SC_OK == status || HttpStatus.SC_CREATED == status
-                        || HttpStatus.SC_NO_CONTENT == status)) {
-                    log.error("Creating trait failed with status: {}", response.getStatusLine());
-                    throw new AttestationHubException(
-                            "Sending data to controller failed with error: " + response.getStatusLine());
-                }
+        HttpResponse response = null;
+        try {
+            response = putRequest(null, url);
 
-                log.debug("Creating trait {} Status: {}", trait, status);
+            int status = response.getStatusLine().getStatusCode();
 
-            } catch (AttestationHubException rethrowException) {
-                throw rethrowException;
-            } catch (Exception e) {
-                log.error("Creating trait failed", e);
-                throw new AttestationHubException("Sending data to controller failed", e);
-            } finally {
-                HttpClientUtils.closeQuietly(response);
+            if (!(HttpStatus.SC_OK == status || HttpStatus.SC_CREATED == status
+                    || HttpStatus.SC_NO_CONTENT == status)) {
+                log.error("Creating trait failed with status: {}", response.getStatusLine());
+                throw new AttestationHubException(
+                        "Sending data to controller failed with error: " + response.getStatusLine());
             }
 
+            log.debug("Creating trait {} Status: {}", trait, status);
+
+        } catch (AttestationHubException rethrowException) {
+            throw rethrowException;
+        } catch (Exception e) {
+            log.error("Creating trait failed", e);
+            throw new AttestationHubException("Sending data to controller failed", e);
+        } finally {
+            HttpClientUtils.closeQuietly(response);
         }
     }
 
     /**
-     * Queries Openstack for resource provider given the host name.
+     * Returns the resource provider of the host name from the index of the Placement endpoint. The provider is
+     * queried by name only if it is not in the index.
      *
      * @param hostName the host name to get the details for
      * @return the host details including its UUID and generation.
@@ -153,8 +259,84 @@ public class PlacementClient {
      *                                 if multiple or no resource providers are present with the requested name
      */
     public ResourceProvider getResourceProvider(String hostName) throws AttestationHubException, NetworkIOException {
+        ResourceProviderIndex index = getResourceProviderIndex();
+        ResourceProvider provider = index.get(hostName);
+        if (provider == null) {
+            provider = findResourceProvider(hostName);
+            index.put(hostName, provider);
+        }
+        return provider;
+    }
+
+    /**
+     * Returns the index of the Placement endpoint, loading all resource providers first if it is outdated. If the
+     * listing fails, providers are queried by name until the next attempt.
+     */
+    private ResourceProviderIndex getResourceProviderIndex() throws AttestationHubException {
+        ResourceProviderIndex index = resourceProviderIndexes.computeIfAbsent(
+                getEndpointUrl(EndpointType.PLACEMENT), url -> new ResourceProviderIndex());
+        if (index.needsReload(Constants.RESOURCE_PROVIDER_INDEX_TTL_MILLIS,
+                Constants.RESOURCE_PROVIDER_INDEX_RETRY_MILLIS)) {
+            synchronized (index) {
+                if (index.needsReload(Constants.RESOURCE_PROVIDER_INDEX_TTL_MILLIS,
+                        Constants.RESOURCE_PROVIDER_INDEX_RETRY_MILLIS)) {
+                    try {
+                        index.reload(listResourceProviders());
+                        log.info("Loaded {} resource providers", index.size());
+                    } catch (AttestationHubException | NetworkIOException e) {
+                        index.reloadFailed();
+                        log.warn("Listing resource providers failed, querying them by name", e);
+                    }
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns all resource providers of the Placement endpoint.
+     */
+    private List<ResourceProvider> listResourceProviders() throws AttestationHubException, NetworkIOException {
+        String url = getEndpointUrl(EndpointType.PLACEMENT).concat(Constants.RESOURCE_PATH_RESOURCE_PROVIDERS_LIST);
+        log.debug("Listing resource providers using Url : " + url);
+        HttpResponse response = null;
+        try {
+            response = getRequest(url);
+
+            int status = response.getStatusLine().getStatusCode();
+
+            if (HttpStatus.SC_OK != status) {
+                log.error("Listing resource providers failed with status: {}", response.getStatusLine());
+                throw new AttestationHubException(
+                        "Getting data from controller failed with error: " + response.getStatusLine());
+            }
+
+            // streamed, the listing of a large region is big
+            ResourceProviderByNameResponse responseObj = placementMapper
+                    .readValue(response.getEntity().getContent(), ResourceProviderByNameResponse.class);
+
+            if (responseObj == null || responseObj.getResourceProviders() == null) {
+                log.error("Error processing response when listing resource providers: {}", responseObj);
+                throw new AttestationHubException("Error processing response from controller");
+            }
+            return responseObj.getResourceProviders();
+
+        } catch (AttestationHubException|NetworkIOException rethrowException) {
+            throw rethrowException;
+        } catch (Exception e) {
+            log.error("Listing resource providers failed", e);
+            throw new AttestationHubException("Getting data from controller failed", e);
+        } finally {
+            HttpClientUtils.closeQuietly(response);
+        }
+    }
+
+    /**
+     * Queries Openstack for resource provider given the host name.
+     */
+    private ResourceProvider findResourceProvider(String hostName) throws AttestationHubException, NetworkIOException {
         ResourceProvider provider;
-        String url = this.identityService.getEndpointUrl(EndpointType.PLACEMENT)
+        String url = getEndpointUrl(EndpointType.PLACEMENT)
                 .concat(Constants.RESOURCE_PATH_RESOURCE_PROVIDERS_NAME_QUERY).concat(hostName);
         log.debug("Getting resource provider using Url : " + url);
         HttpResponse response = null;
@@ -201,7 +383,7 @@ public class PlacementClient {
         Set<String> resourceProviderTraitSet = new HashSet<>();
         long generation;
 
-        String url = this.identityService.getEndpointUrl(EndpointType.PLACEMENT)
+        String url = getEndpointUrl(EndpointType.PLACEMENT)
                 .concat(Constants.RESOURCE_PATH_RESOURCE_PROVIDERS).concat(uuid)
                 .concat(Constants.RESOURCE_PATH_TRAITS);
         log.debug("Getting resource providers traits from Url: {} ", url);
@@ -212,6 +394,10 @@ public class PlacementClient {
 
             int status = response.getStatusLine().getStatusCode();
 
+            if (HttpStatus.SC_NOT_FOUND == status) {
+                // deleted, possibly re-created with the same name and a new uuid
+                evictResourceProvider(uuid);
+            }
             if (HttpStatus.SC_OK != status) {
                 log.error("Getting resource provider traits data from controller failed with status: {}",
                         response.getStatusLine());
@@ -259,7 +445,7 @@ public class PlacementClient {
     public void mapResourceProviderTraits(ResourceProviderTraits resourceProviderTraits)
             throws AttestationHubException, RetryPlacementCallException, NetworkIOException {
 
-        String url = this.identityService.getEndpointUrl(EndpointType.PLACEMENT)
+        String url = getEndpointUrl(EndpointType.PLACEMENT)
                 .concat(Constants.RESOURCE_PATH_RESOURCE_PROVIDERS).concat(resourceProviderTraits.getUuid())
                 .concat(Constants.RESOURCE_PATH_TRAITS);
         log.debug("Mapping Traits Data to Resource Provider using url: {}", url);
@@ -276,13 +462,19 @@ public class PlacementClient {
 
             if(HttpStatus.SC_CONFLICT == status) {
                 throw new RetryPlacementCallException();
+            } else if (HttpStatus.SC_BAD_REQUEST == status || HttpStatus.SC_NOT_FOUND == status) {
+                // a trait may have been deleted since the catalogue was read, read it again on the next push
+                getTraitCatalogue().invalidate();
+                throw new AttestationHubException(
+                        "Sending data to controller failed with error: " + response.getStatusLine());
             } else if (HttpStatus.SC_OK != status) {
                 throw new AttestationHubException(
                         "Sending data to controller failed with error: " + response.getStatusLine());
             }
         } catch (RetryPlacementCallException|NetworkIOException rethrowException) {
+            // there is no response on a network error
             log.error("Mapping traits for host: {} failed with status: {}", resourceProviderTraits.getUuid(),
-                    response.getStatusLine());
+                    response != null ? response.getStatusLine() : rethrowException.getMessage());
             throw rethrowException;
         } catch (AttestationHubException rethrowException) {
             log.error("Mapping traits for host: {} failed", resourceProviderTraits.getUuid());
@@ -295,23 +487,47 @@ public class PlacementClient {
         }
     }
 
-    private void initIdentityService(String keystonePublicEndpoint, String projectName, String username, String password,
-            String domainName, String version) throws AttestationHubException {
-        this.identityService = IdentityServiceFactory.getIdentityService(IdentityService.VERSION_V3);
-        if (this.identityService == null) {
-            throw new AttestationHubException("No valid authentication methods found for version: " + version);
+    private void evictResourceProvider(String uuid) throws AttestationHubException {
+        ResourceProviderIndex index = resourceProviderIndexes.get(getEndpointUrl(EndpointType.PLACEMENT));
+        if (index != null) {
+            index.remove(uuid);
         }
-        this.authToken = this.identityService.createAuthToken(keystonePublicEndpoint, projectName,
-                username, password, domainName);
+    }
 
-        log.debug("Created auth token using {} version", version);
+    /**
+     * Returns the Keystone session of the tenant credentials, shared with other clients using the same credentials.
+     */
+    private KeystoneSession getSession() throws AttestationHubException {
+        return this.tokenCache.getSession(this.keystonePublicEndpoint, this.projectName, this.username, this.password,
+                this.domainName, this.version);
+    }
+
+    private String getEndpointUrl(EndpointType type) throws AttestationHubException {
+        return getSession().getEndpointUrl(type);
+    }
+
+    /**
+     * Executes the request with the current token. If the token is rejected, e.g. since it was revoked, it is dropped
+     * from the cache and the request is sent once more with a new token.
+     */
+    private HttpResponse execute(HttpRequestBase request) throws AttestationHubException, IOException {
+        KeystoneSession session = getSession();
+        request.setHeader(Constants.AUTH_TOKEN, session.getAuthToken());
+        HttpResponse response = httpClient.execute(request);
+        if (HttpStatus.SC_UNAUTHORIZED == response.getStatusLine().getStatusCode()) {
+            log.warn("Auth token rejected by {}, retrying with a new token", request.getURI());
+            HttpClientUtils.closeQuietly(response);
+            this.tokenCache.invalidate(session);
+            request.setHeader(Constants.AUTH_TOKEN, getSession().getAuthToken());
+            response = httpClient.execute(request);
+        }
+        return response;
     }
 
 
     private HttpResponse putRequest(String jsonData, String url) throws AttestationHubException, NetworkIOException {
         HttpPut putRequest = new HttpPut(url);
         log.debug("putRequest  URL : {}  jsonData: {}", putRequest.getURI(), jsonData);
-        putRequest.setHeader(Constants.AUTH_TOKEN, this.authToken);
         putRequest.setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON);
         putRequest.setHeader(Constants.OPENSTACK_API_MICROVERSION_HEADER, Constants.PLACEMENT_API_MICROVERSION_VALUE);
 
@@ -326,9 +542,11 @@ public class PlacementClient {
 
         HttpResponse response;
         try {
-            response = httpClient.execute(putRequest);
+            response = execute(putRequest);
         } catch (IOException ioe) {
             throw new NetworkIOException("Network Error getting data from controller", ioe);
+        } catch (AttestationHubException rethrowException) {
+            throw rethrowException;
         } catch (Exception e) {
             log.error("Put request to {} failed", putRequest.getURI(), e);
             throw new AttestationHubException("Sending data to controller failed", e);
@@ -340,15 +558,16 @@ public class PlacementClient {
     private HttpResponse getRequest(String url) throws AttestationHubException, NetworkIOException {
         HttpGet getRequest = new HttpGet(url);
         log.debug("getRequest url : " + getRequest.getURI());
-        getRequest.setHeader(Constants.AUTH_TOKEN, this.authToken);
         getRequest.setHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON);
         getRequest.setHeader(Constants.OPENSTACK_API_MICROVERSION_HEADER, Constants.PLACEMENT_API_MICROVERSION_VALUE);
 
         HttpResponse response;
         try {
-            response = httpClient.execute(getRequest);
+            response = execute(getRequest);
         } catch (IOException ioe) {
             throw new NetworkIOException("Network Error getting data from controller", ioe);
+        } catch (AttestationHubException rethrowException) {
+            throw rethrowException;
         } catch (Exception e) {
             log.error("Get request to {} failed", getRequest.getURI(), e);
             throw new AttestationHubException("Getting data to controller failed.", e);
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.attestationhub.plugin.nova;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.intel.attestationhub.plugin.nova.model.ResourceProvider;
+
+/**
+ * Name to resource provider index of a Placement service. It is loaded from the listing of all resource providers so
+ * hosts are resolved without a request per host. Providers created after the listing are added as they are looked up
+ * by name, and the listing is reloaded periodically to drop deleted providers.
+ */
+class ResourceProviderIndex {
+
+    private volatile Map<String, ResourceProvider> providersByName = new ConcurrentHashMap<>();
+    private volatile long loadedAt;
+    private volatile long lastAttemptAt;
+
+    /**
+     * The index is reloaded once it is older than the ttl. A failed reload is retried after the retry interval.
+     */
+    boolean needsReload(long ttlMillis, long retryIntervalMillis) {
+        long now = System.currentTimeMillis();
+        return now - this.loadedAt >= ttlMillis && now - this.lastAttemptAt >= retryIntervalMillis;
+    }
+
+    void reload(List<ResourceProvider> providers) {
+        Map<String, ResourceProvider> byName = new ConcurrentHashMap<>(providers.size() * 4 / 3 + 1);
+        for (ResourceProvider provider : providers) {
+            if (provider.getName() != null) {
+                byName.put(provider.getName(), provider);
+            }
+        }
+        this.providersByName = byName;
+        this.loadedAt = this.lastAttemptAt = System.currentTimeMillis();
+    }
+
+    void reloadFailed() {
+        this.lastAttemptAt = System.currentTimeMillis();
+    }
+
+    ResourceProvider get(String name) {
+        return this.providersByName.get(name);
+    }
+
+    void put(String name, ResourceProvider provider) {
+        this.providersByName.put(name, provider);
+    }
+
+    /**
+     * Drops a provider that no longer exists, so it is looked up again by name.
+     */
+    void remove(String uuid) {
+        this.providersByName.values().removeIf(provider -> uuid.equals(provider.getUuid()));
+    }
+
+    int size() {
+        return this.providersByName.size();
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.attestationhub.plugin.nova;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Traits defined in a Placement service. The catalogue is reloaded after its ttl, or earlier once it is invalidated
+ * because Placement did not know a trait it contains. Traits created by the hub are added as they are created.
+ */
+class TraitCatalogue {
+
+    private volatile Set<String> traits = ConcurrentHashMap.newKeySet();
+    private volatile long loadedAt;
+
+    boolean needsReload(long ttlMillis) {
+        return System.currentTimeMillis() - this.loadedAt >= ttlMillis;
+    }
+
+    void reload(Collection<String> loadedTraits) {
+        Set<String> traitSet = ConcurrentHashMap.newKeySet(loadedTraits.size());
+        traitSet.addAll(loadedTraits);
+        this.traits = traitSet;
+        this.loadedAt = System.currentTimeMillis();
+    }
+
+    void invalidate() {
+        this.loadedAt = 0;
+    }
+
+    void add(String trait) {
+        this.traits.add(trait);
+    }
+
+    /**
+     * Returns a copy of the traits, which is not affected by traits created later.
+     */
+    Set<String> getTraits() {
+        return new HashSet<>(this.traits);
+    }
+}
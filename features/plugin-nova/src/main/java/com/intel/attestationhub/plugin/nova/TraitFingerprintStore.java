@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.attestationhub.plugin.nova;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * Records the fingerprint of the ISECL traits last applied to each resource provider, so hosts whose traits did not
+ * change are not sent to Placement again. The provider generation is not used to detect changes: Nova bumps it on
+ * every allocation, and the hub only knows it from the cached resource provider index. ISECL traits changed outside
+ * of the hub are corrected when the host is verified against Placement, once the verification interval has passed
+ * since it was last checked.
+ */
+class TraitFingerprintStore {
+
+    private static final TraitFingerprintStore instance = new TraitFingerprintStore(
+            Constants.TRAIT_VERIFICATION_INTERVAL_MILLIS);
+
+    private final long verificationIntervalMillis;
+    private final ConcurrentMap<String, Fingerprint> fingerprints = new ConcurrentHashMap<>();
+
+    TraitFingerprintStore(long verificationIntervalMillis) {
+        this.verificationIntervalMillis = verificationIntervalMillis;
+    }
+
+    static TraitFingerprintStore getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns true if the traits were applied to the provider and it is not due for verification.
+     */
+    boolean isCurrent(String uuid, Set<String> citTraits) {
+        Fingerprint fingerprint = this.fingerprints.get(uuid);
+        return fingerprint != null && fingerprint.digest.equals(digestOf(citTraits))
+                && System.currentTimeMillis() - fingerprint.verifiedAt < this.verificationIntervalMillis;
+    }
+
+    /**
+     * Records the traits the provider carries after it was mapped or verified.
+     */
+    void applied(String uuid, Set<String> citTraits) {
+        this.fingerprints.put(uuid, new Fingerprint(digestOf(citTraits)));
+    }
+
+    private static String digestOf(Set<String> citTraits) {
+        return Hashing.sha256().hashString(String.join(",", new TreeSet<>(citTraits)), StandardCharsets.UTF_8)
+                .toString();
+    }
+
+    private static class Fingerprint {
+        private final String digest;
+        private final long verifiedAt = System.currentTimeMillis();
+
+        private Fingerprint(String digest) {
+            this.digest = digest;
+        }
+    }
+}
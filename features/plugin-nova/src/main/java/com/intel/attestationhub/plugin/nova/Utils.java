@@ -7,6 +7,9 @@ package com.intel.attestationhub.plugin.nova;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.http.client.config.RequestConfig;
@@ -16,7 +19,20 @@ import com.intel.mtwilson.attestationhub.exception.AttestationHubException;
 public class Utils {
 
     public static final RequestConfig REQUEST_CONFIG = RequestConfig.custom()
-            .setConnectTimeout(Constants.CONNECTION_TIMEOUT).setSocketTimeout(Constants.SOCKET_TIMEOUT).build();
+            .setConnectTimeout(Constants.CONNECTION_TIMEOUT).setSocketTimeout(Constants.SOCKET_TIMEOUT)
+            .setConnectionRequestTimeout(Constants.CONNECTION_TIMEOUT).build();
+
+    /**
+     * Returns a pool of daemon threads named after the task they run
+     */
+    public static ExecutorService newFixedThreadPool(String name, int threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
 
     public static void validateUrl(String urlStr, String type) throws AttestationHubException {
         if (StringUtils.isBlank(urlStr)) {
@@ -40,4 +40,10 @@ public interface IdentityService {
      */
     public String getEndpointUrl(EndpointType type) throws AttestationHubException;
 
+    /**
+     * Returns the expiry of the token created last in milliseconds since the epoch, or 0 if the response does not
+     * carry one
+     */
+    public long getTokenExpiry() throws AttestationHubException;
+
 }
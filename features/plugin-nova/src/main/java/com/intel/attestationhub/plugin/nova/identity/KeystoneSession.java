@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.attestationhub.plugin.nova.identity;
+
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.intel.attestationhub.plugin.nova.identity.IdentityService.EndpointType;
+import com.intel.mtwilson.attestationhub.exception.AttestationHubException;
+
+/**
+ * A Keystone token together with the service endpoints of the catalog it was issued with.
+ */
+public class KeystoneSession {
+    private final String authToken;
+    private final Map<EndpointType, String> endpointUrls;
+    private final long issuedAt = System.currentTimeMillis();
+    private final long expiresAt;
+
+    KeystoneSession(String authToken, Map<EndpointType, String> endpointUrls, long expiresAt) {
+        this.authToken = authToken;
+        this.endpointUrls = endpointUrls;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getAuthToken() {
+        return this.authToken;
+    }
+
+    /**
+     * Returns the API endpoint URL of the type from the service catalog.
+     */
+    public String getEndpointUrl(EndpointType type) throws AttestationHubException {
+        String endpointUrl = this.endpointUrls.get(type);
+        if (StringUtils.isEmpty(endpointUrl)) {
+            throw new AttestationHubException("Cannot find URL endpoint for " + type + " service.");
+        }
+        return endpointUrl;
+    }
+
+    /**
+     * A token is refreshed the given margin before it expires, but not before half of its lifetime has passed.
+     */
+    boolean isFresh(long refreshMarginMillis) {
+        long lifetime = this.expiresAt - this.issuedAt;
+        return System.currentTimeMillis() < this.issuedAt + Math.max(lifetime - refreshMarginMillis, lifetime / 2);
+    }
+
+    boolean isExpired() {
+        return System.currentTimeMillis() >= this.expiresAt;
+    }
+}
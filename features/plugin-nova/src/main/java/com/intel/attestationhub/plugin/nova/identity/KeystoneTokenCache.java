@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.attestationhub.plugin.nova.identity;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.google.common.hash.Hashing;
+import com.intel.attestationhub.plugin.nova.Constants;
+import com.intel.attestationhub.plugin.nova.identity.IdentityService.EndpointType;
+import com.intel.mtwilson.attestationhub.exception.AttestationHubException;
+
+/**
+ * Process wide cache of Keystone tokens and service endpoints, keyed by the auth endpoint, user, project and domain,
+ * so tenants sharing an OpenStack do not authenticate on every push. A token is refreshed shortly before it expires.
+ * Concurrent requests for the same credentials result in a single call to Keystone.
+ */
+public class KeystoneTokenCache {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(KeystoneTokenCache.class);
+
+    interface SessionLoader {
+        KeystoneSession load(String keystoneEndpoint, String projectName, String userName, String password,
+                String domainName, String version) throws AttestationHubException;
+    }
+
+    private static final KeystoneTokenCache instance = new KeystoneTokenCache(new SessionLoader() {
+        @Override
+        public KeystoneSession load(String keystoneEndpoint, String projectName, String userName, String password,
+                String domainName, String version) throws AttestationHubException {
+            return createSession(keystoneEndpoint, projectName, userName, password, domainName, version);
+        }
+    }, Constants.KEYSTONE_TOKEN_REFRESH_MARGIN_MILLIS);
+
+    private final SessionLoader loader;
+    private final long refreshMarginMillis;
+    private final ConcurrentMap<List<String>, Entry> entries = new ConcurrentHashMap<>();
+
+    KeystoneTokenCache(SessionLoader loader, long refreshMarginMillis) {
+        this.loader = loader;
+        this.refreshMarginMillis = refreshMarginMillis;
+    }
+
+    public static KeystoneTokenCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns a session for the credentials, authenticating only if there is none or its token is about to expire.
+     * If the refresh fails, the current token is used for as long as it is valid.
+     */
+    public KeystoneSession getSession(String keystoneEndpoint, String projectName, String userName, String password,
+            String domainName, String version) throws AttestationHubException {
+        // the password is part of the key so changing it in the tenant configuration takes effect immediately
+        List<String> key = Arrays.asList(keystoneEndpoint, userName, projectName, domainName,
+                password == null ? null : Hashing.sha256().hashString(password, StandardCharsets.UTF_8).toString());
+        Entry entry = this.entries.computeIfAbsent(key, k -> new Entry());
+        KeystoneSession session = entry.session;
+        if (session != null && session.isFresh(this.refreshMarginMillis)) {
+            return session;
+        }
+        synchronized (entry) {
+            session = entry.session;
+            if (session != null && session.isFresh(this.refreshMarginMillis)) {
+                return session;
+            }
+            try {
+                entry.session = this.loader.load(keystoneEndpoint, projectName, userName, password, domainName,
+                        version);
+            } catch (AttestationHubException e) {
+                if (session == null || session.isExpired()) {
+                    throw e;
+                }
+                log.warn("Refreshing the Keystone token of user {} failed, using the current token until it expires",
+                        userName, e);
+                return session;
+            }
+            return entry.session;
+        }
+    }
+
+    /**
+     * Drops the session, e.g. after its token was rejected, so the next request authenticates again.
+     */
+    public void invalidate(KeystoneSession session) {
+        for (Entry entry : this.entries.values()) {
+            synchronized (entry) {
+                if (entry.session == session) {
+                    entry.session = null;
+                }
+            }
+        }
+    }
+
+    private static KeystoneSession createSession(String keystoneEndpoint, String projectName, String userName,
+            String password, String domainName, String version) throws AttestationHubException {
+        IdentityService identityService = IdentityServiceFactory.getIdentityService(IdentityService.VERSION_V3);
+        if (identityService == null) {
+            throw new AttestationHubException("No valid authentication methods found for version: " + version);
+        }
+        String authToken = identityService.createAuthToken(keystoneEndpoint, projectName, userName, password,
+                domainName);
+        Map<EndpointType, String> endpointUrls = new EnumMap<>(EndpointType.class);
+        for (EndpointType type : EndpointType.values()) {
+            try {
+                String endpointUrl = identityService.getEndpointUrl(type);
+                if (StringUtils.isNotEmpty(endpointUrl)) {
+                    endpointUrls.put(type, endpointUrl);
+                }
+            } catch (AttestationHubException e) {
+                log.debug("No {} endpoint in the service catalog", type);
+            }
+        }
+        long now = System.currentTimeMillis();
+        long expiresAt = identityService.getTokenExpiry();
+        if (expiresAt <= now) {
+            log.warn("Keystone token does not carry a valid expiry, assuming it is valid for {} minutes",
+                    TimeUnit.MILLISECONDS.toMinutes(Constants.KEYSTONE_TOKEN_DEFAULT_LIFETIME_MILLIS));
+            expiresAt = now + Constants.KEYSTONE_TOKEN_DEFAULT_LIFETIME_MILLIS;
+        }
+        log.info("Created auth token using {} version valid until {}", version, new Date(expiresAt));
+        return new KeystoneSession(authToken, endpointUrls, expiresAt);
+    }
+
+    private static class Entry {
+        private volatile KeystoneSession session;
+    }
+}
@@ -5,6 +5,9 @@
 
 package com.intel.attestationhub.plugin.nova.identity;
 
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -90,6 +93,21 @@ public class V2IdentityServiceImpl extends AbstractIdentityService {
 	return endpointUrl;
     }
     
+    @Override
+    public long getTokenExpiry() throws AttestationHubException {
+	JsonObject access = new JsonParser().parse(responseStr).getAsJsonObject().getAsJsonObject("access");
+	if (access == null || !access.has("token") || !access.getAsJsonObject("token").has("expires")) {
+	    return 0;
+	}
+	String expires = access.getAsJsonObject("token").getAsJsonPrimitive("expires").getAsString();
+	try {
+	    return Instant.parse(expires).toEpochMilli();
+	} catch (DateTimeParseException e) {
+	    log.warn("Invalid expiry of the auth token: {}", expires);
+	    return 0;
+	}
+    }
+    
     public String getAuthEndpoint(String glanceKeystonePublicEndpoint) {
 	return glanceKeystonePublicEndpoint + "/v2.0/tokens";
     }
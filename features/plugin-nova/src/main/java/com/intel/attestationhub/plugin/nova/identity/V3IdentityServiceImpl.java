@@ -6,6 +6,8 @@
 package com.intel.attestationhub.plugin.nova.identity;
 
 import java.io.IOException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -35,6 +37,7 @@ public class V3IdentityServiceImpl extends AbstractIdentityService {
     public String getAuthRequestBody(String domainName, String projectName, String userName, String password)
             throws AttestationHubException {
         this.endpointUrlMap.clear();
+        this.response = null;
 
         validateV3Params(domainName, projectName, userName, password);
         AuthRequestV3 authTokenBody = new AuthRequestV3(domainName, projectName, userName, password);
@@ -55,14 +58,11 @@ public class V3IdentityServiceImpl extends AbstractIdentityService {
 
         if (endpointUrl == null) {
             try {
-                this.response = identityMapper.readValue(this.responseStr, AuthResponseV3.class);
+                endpointUrl = getResponse().getEndpointUrl(type.toString());
             } catch (ParseException | IOException e) {
                 log.error("Error while parsing auth response", e);
                 throw new AttestationHubException("Cannot find URL endpoint for " + type + " service.", e);
             }
-            log.debug("Auth Response: {}", this.response.toString());
-
-            endpointUrl = this.response.getEndpointUrl(type.toString());
         }
 
         if (StringUtils.isEmpty(endpointUrl)) {
@@ -73,6 +73,34 @@ public class V3IdentityServiceImpl extends AbstractIdentityService {
         return endpointUrl;
     }
 
+    @Override
+    public long getTokenExpiry() throws AttestationHubException {
+        String expiresAt;
+        try {
+            expiresAt = getResponse().getExpiresAt();
+        } catch (ParseException | IOException e) {
+            log.error("Error while parsing auth response", e);
+            throw new AttestationHubException("Cannot read the expiry of the auth token", e);
+        }
+        if (StringUtils.isEmpty(expiresAt)) {
+            return 0;
+        }
+        try {
+            return Instant.parse(expiresAt).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            log.warn("Invalid expiry of the auth token: {}", expiresAt);
+            return 0;
+        }
+    }
+
+    private AuthResponseV3 getResponse() throws IOException {
+        if (this.response == null) {
+            this.response = identityMapper.readValue(this.responseStr, AuthResponseV3.class);
+            log.debug("Auth Response: {}", this.response.toString());
+        }
+        return this.response;
+    }
+
     @Override
     public String getAuthTokenFromResponse(HttpResponse httpResponse) throws AttestationHubException {
         return httpResponse.getFirstHeader(Constants.KEYSTONE_AUTH_TOKEN_HEADER_KEY).getValue();
@@ -20,9 +20,12 @@ public class AuthResponseV3 {
     private static class Token {
         public List<Catalog> catalog;
 
+        @JsonProperty("expires_at")
+        public String expiresAt;
+
         @Override
         public String toString() {
-            return "Token [catalog=" + this.catalog + "]";
+            return "Token [catalog=" + this.catalog + ", expiresAt=" + this.expiresAt + "]";
         }
 
     }
@@ -70,6 +73,13 @@ public class AuthResponseV3 {
         return null;
     }
 
+    /**
+     * Returns the ISO 8601 expiry of the token or null
+     */
+    public String getExpiresAt() {
+        return this.token != null ? this.token.expiresAt : null;
+    }
+
 
     @Override
     public String toString() {
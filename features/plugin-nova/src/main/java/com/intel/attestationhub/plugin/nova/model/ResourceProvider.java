@@ -11,6 +11,7 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 public class ResourceProvider {
 
     private String uuid;
+    private String name;
     private long generation;
 
     ResourceProvider() {
@@ -25,13 +26,17 @@ public class ResourceProvider {
         return this.uuid;
     }
 
+    public String getName() {
+        return this.name;
+    }
+
     public long getGeneration() {
         return this.generation;
     }
 
     @Override
     public String toString() {
-        return "ResourceProvider [uuid=" + this.uuid + ", generation=" + this.generation + "]";
+        return "ResourceProvider [uuid=" + this.uuid + ", name=" + this.name + ", generation=" + this.generation + "]";
     }
 
 }
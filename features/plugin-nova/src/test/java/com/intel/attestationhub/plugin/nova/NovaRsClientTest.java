@@ -194,6 +194,35 @@ public class NovaRsClientTest {
         }
     }
 
+    @Test
+    public void testSendDataToEndpoint_WithUnchangedHosts_ExpectNoPlacementCalls()
+            throws AttestationHubException, RetryPlacementCallException, NetworkIOException {
+
+        this.novaClient.sendDataToEndpoint(this.data);
+        this.novaClient.sendDataToEndpoint(this.data);
+
+        // traits of both hosts are only read and mapped by the first call
+        verify(this.placementClient, times(1)).getResourceProviderTraits(HOST1_ID);
+        verify(this.placementClient, times(1)).getResourceProviderTraits(HOST2_ID);
+        verify(this.placementClient, times(2)).mapResourceProviderTraits(any());
+    }
+
+    @Test
+    public void testSendDataToEndpoint_WithProviderGenerationBumped_ExpectNoPlacementCalls()
+            throws AttestationHubException, RetryPlacementCallException, NetworkIOException {
+
+        this.novaClient.sendDataToEndpoint(this.data);
+
+        // allocations on host1 bump the generation of its provider without touching the traits
+        doReturn(new ResourceProvider(HOST1_ID, 5)).when(this.placementClient).getResourceProvider(HOSTNAME1);
+
+        this.novaClient.sendDataToEndpoint(this.data);
+
+        verify(this.placementClient, times(1)).getResourceProviderTraits(HOST1_ID);
+        verify(this.placementClient, times(1)).getResourceProviderTraits(HOST2_ID);
+        verify(this.placementClient, times(2)).mapResourceProviderTraits(any());
+    }
+
     @SuppressWarnings("unchecked")
     @Test
     public void testSendDataToEndpoint_WithConflictsRetry_ExpectSuccess()
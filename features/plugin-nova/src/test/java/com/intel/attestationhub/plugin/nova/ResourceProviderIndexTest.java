@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.attestationhub.plugin.nova;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.intel.attestationhub.plugin.nova.model.ResourceProvider;
+import com.intel.attestationhub.plugin.nova.model.ResourceProviderByNameResponse;
+
+public class ResourceProviderIndexTest {
+
+    private static final String LISTING = "{\"resource_providers\": ["
+            + "{\"uuid\": \"host1_id\", \"name\": \"hostname1\", \"generation\": 3, \"links\": []},"
+            + "{\"uuid\": \"host2_id\", \"name\": \"hostname2\", \"generation\": 7, \"links\": []}]}";
+
+    private ResourceProviderIndex index;
+
+    @Before
+    public void setup() throws IOException {
+        this.index = new ResourceProviderIndex();
+        this.index.reload(new ObjectMapper().readValue(LISTING, ResourceProviderByNameResponse.class)
+                .getResourceProviders());
+    }
+
+    @Test
+    public void testGet_ListedHost_ExpectProvider() {
+        ResourceProvider provider = this.index.get("hostname2");
+
+        assertEquals("host2_id", provider.getUuid());
+        assertEquals(7, provider.getGeneration());
+        assertNull(this.index.get("hostname3"));
+    }
+
+    @Test
+    public void testRemove_DeletedProvider_ExpectMiss() {
+        this.index.remove("host1_id");
+
+        assertNull(this.index.get("hostname1"));
+        assertEquals(1, this.index.size());
+    }
+
+    @Test
+    public void testNeedsReload_AfterFailedReload_ExpectRetryInterval() {
+        ResourceProviderIndex emptyIndex = new ResourceProviderIndex();
+        assertTrue(emptyIndex.needsReload(TimeUnit.MINUTES.toMillis(10), TimeUnit.MINUTES.toMillis(1)));
+
+        emptyIndex.reloadFailed();
+
+        assertFalse(emptyIndex.needsReload(TimeUnit.MINUTES.toMillis(10), TimeUnit.MINUTES.toMillis(1)));
+        assertFalse(this.index.needsReload(TimeUnit.MINUTES.toMillis(10), 0));
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.attestationhub.plugin.nova;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+
+public class TraitCatalogueTest {
+
+    private static final long TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private TraitCatalogue catalogue;
+
+    @Before
+    public void setup() {
+        this.catalogue = new TraitCatalogue();
+        this.catalogue.reload(Sets.newHashSet("HW_XX", "CPU_YY"));
+    }
+
+    @Test
+    public void testAdd_CreatedTrait_ExpectInLaterCopies() {
+        Set<String> before = this.catalogue.getTraits();
+
+        this.catalogue.add("CUSTOM_ISECL_TRUSTED");
+
+        assertEquals(Sets.newHashSet("HW_XX", "CPU_YY"), before);
+        assertEquals(Sets.newHashSet("HW_XX", "CPU_YY", "CUSTOM_ISECL_TRUSTED"), this.catalogue.getTraits());
+    }
+
+    @Test
+    public void testNeedsReload_Invalidated_ExpectReload() {
+        assertTrue(new TraitCatalogue().needsReload(TTL_MILLIS));
+        assertFalse(this.catalogue.needsReload(TTL_MILLIS));
+
+        this.catalogue.invalidate();
+
+        assertTrue(this.catalogue.needsReload(TTL_MILLIS));
+    }
+}
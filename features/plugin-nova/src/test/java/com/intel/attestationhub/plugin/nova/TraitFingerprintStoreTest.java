@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.attestationhub.plugin.nova;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+
+public class TraitFingerprintStoreTest {
+
+    private static final String HOST1_ID = "host1_id";
+
+    private static final Set<String> HOST1_CIT_TAGS = Sets.newHashSet("CUSTOM_ISECL_TRUSTED",
+            "CUSTOM_ISECL_AT_COUNTRY_US", "CUSTOM_ISECL_AT_STATE_OR");
+
+    @Test
+    public void testIsCurrent_SameTraits_ExpectCurrent() {
+        TraitFingerprintStore store = new TraitFingerprintStore(TimeUnit.HOURS.toMillis(1));
+        assertFalse(store.isCurrent(HOST1_ID, HOST1_CIT_TAGS));
+
+        store.applied(HOST1_ID, HOST1_CIT_TAGS);
+
+        assertTrue(store.isCurrent(HOST1_ID, Sets.newHashSet(HOST1_CIT_TAGS)));
+        assertFalse(store.isCurrent(HOST1_ID, Sets.newHashSet("CUSTOM_ISECL_TRUSTED")));
+        assertFalse(store.isCurrent("host2_id", HOST1_CIT_TAGS));
+    }
+
+    @Test
+    public void testIsCurrent_VerificationIntervalPassed_ExpectNotCurrent() {
+        TraitFingerprintStore store = new TraitFingerprintStore(0);
+
+        store.applied(HOST1_ID, HOST1_CIT_TAGS);
+
+        assertFalse(store.isCurrent(HOST1_ID, HOST1_CIT_TAGS));
+    }
+}
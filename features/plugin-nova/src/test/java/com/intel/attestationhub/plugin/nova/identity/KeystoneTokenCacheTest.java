@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.attestationhub.plugin.nova.identity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.intel.attestationhub.plugin.nova.identity.IdentityService.EndpointType;
+import com.intel.mtwilson.attestationhub.exception.AttestationHubException;
+
+public class KeystoneTokenCacheTest {
+
+    private static final String KEYSTONE_ENDPOINT = "http://192.168.0.1:5000";
+    private static final long REFRESH_MARGIN_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private volatile long tokenLifetimeMillis = TimeUnit.HOURS.toMillis(1);
+    private volatile boolean failLoad;
+    private KeystoneTokenCache tokenCache;
+
+    @Before
+    public void setup() {
+        this.tokenCache = new KeystoneTokenCache(new KeystoneTokenCache.SessionLoader() {
+            @Override
+            public KeystoneSession load(String keystoneEndpoint, String projectName, String userName, String password,
+                    String domainName, String version) throws AttestationHubException {
+                if (failLoad) {
+                    throw new AttestationHubException("Unable to authenticate");
+                }
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    throw new AttestationHubException(e);
+                }
+                return new KeystoneSession("token-" + loads.incrementAndGet(),
+                        Collections.singletonMap(EndpointType.PLACEMENT, "http://192.168.0.1/placement"),
+                        System.currentTimeMillis() + tokenLifetimeMillis);
+            }
+        }, REFRESH_MARGIN_MILLIS);
+    }
+
+    @Test
+    public void testGetSession_SameCredentials_ExpectReuse() throws AttestationHubException {
+        KeystoneSession first = getSession("user", "password");
+        KeystoneSession second = getSession("user", "password");
+
+        assertSame(first, second);
+        assertEquals(1, this.loads.get());
+        assertEquals("http://192.168.0.1/placement", second.getEndpointUrl(EndpointType.PLACEMENT));
+    }
+
+    @Test
+    public void testGetSession_DifferentCredentials_ExpectSeparateSessions() throws AttestationHubException {
+        KeystoneSession first = getSession("user", "password");
+        KeystoneSession otherUser = getSession("admin", "password");
+        KeystoneSession changedPassword = getSession("user", "new-password");
+
+        assertNotSame(first, otherUser);
+        assertNotSame(first, changedPassword);
+        assertEquals(3, this.loads.get());
+    }
+
+    @Test
+    public void testGetSession_ConcurrentRequests_ExpectSingleLoad() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<KeystoneSession>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Callable<KeystoneSession>() {
+                    @Override
+                    public KeystoneSession call() throws Exception {
+                        return getSession("user", "password");
+                    }
+                }));
+            }
+            for (Future<KeystoneSession> future : futures) {
+                assertSame(futures.get(0).get(), future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, this.loads.get());
+    }
+
+    @Test
+    public void testGetSession_TokenExpired_ExpectRefresh() throws Exception {
+        this.tokenLifetimeMillis = 100;
+        KeystoneSession first = getSession("user", "password");
+        Thread.sleep(150);
+        this.tokenLifetimeMillis = TimeUnit.HOURS.toMillis(1);
+
+        KeystoneSession second = getSession("user", "password");
+
+        assertNotSame(first, second);
+        assertEquals(2, this.loads.get());
+    }
+
+    @Test
+    public void testGetSession_RefreshFailsBeforeExpiry_ExpectCurrentToken() throws Exception {
+        // refreshed after half of its lifetime, as the lifetime is shorter than the margin
+        this.tokenLifetimeMillis = TimeUnit.SECONDS.toMillis(2);
+        KeystoneSession first = getSession("user", "password");
+        Thread.sleep(1100);
+        this.failLoad = true;
+
+        assertSame(first, getSession("user", "password"));
+    }
+
+    @Test(expected = AttestationHubException.class)
+    public void testGetSession_Invalidated_ExpectNewLoad() throws AttestationHubException {
+        KeystoneSession first = getSession("user", "password");
+        this.tokenCache.invalidate(first);
+        this.failLoad = true;
+
+        getSession("user", "password");
+    }
+
+    private KeystoneSession getSession(String userName, String password) throws AttestationHubException {
+        return this.tokenCache.getSession(KEYSTONE_ENDPOINT, "project", userName, password, "domain", "v3");
+    }
+}
@@ -49,6 +49,8 @@ public class V3IdentityServiceImplTest {
                 authResponse.getEndpointUrl("identity"));
         assertEquals("Placement URL does not match expected output", "http://192.168.0.1/placement",
                 authResponse.getEndpointUrl("placement"));
+        assertEquals("Token expiry does not match expected output", "2018-06-06T01:41:41.000000Z",
+                authResponse.getExpiresAt());
 
     }
 
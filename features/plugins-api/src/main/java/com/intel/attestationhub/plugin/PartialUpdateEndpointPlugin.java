@@ -0,0 +1,14 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.attestationhub.plugin;
+
+/**
+ * Implemented by plugins that update every host at the endpoint independently
+ * of the others. Such a plugin may be handed only the hosts that changed since
+ * the last publish, hosts missing from the data are left untouched.
+ */
+public interface PartialUpdateEndpointPlugin extends EndpointPlugin {
+}
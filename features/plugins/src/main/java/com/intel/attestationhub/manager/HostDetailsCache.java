@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.attestationhub.manager;
+
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.intel.attestationhub.api.HostDetails;
+import com.intel.mtwilson.attestationhub.data.AhPublishedHost;
+
+/**
+ * Keeps the published details, including the signed trust report, of every
+ * host. An entry is reused, by every tenant mapped to the host and across
+ * publish cycles, as long as the host record and the signing key are
+ * unchanged. The valid to date and trusted flag are compared as well since
+ * the expiry sweeps update them without touching the modified date.
+ */
+class HostDetailsCache {
+
+    interface Loader {
+	HostDetails load(AhPublishedHost host);
+    }
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    HostDetails get(AhPublishedHost host, String keyId, Loader loader) {
+	Entry entry = entries.get(host.getId());
+	if (entry != null && entry.matches(host, keyId)) {
+	    return entry.details;
+	}
+	HostDetails details = loader.load(host);
+	// retry signing on the next cycle if it failed this time
+	if (details != null && details.signed_trust_report != null) {
+	    entries.put(host.getId(), new Entry(host, keyId, details));
+	}
+	return details;
+    }
+
+    /**
+     * Drops the entries of hosts that are no longer published
+     */
+    void retain(Set<String> hostIds) {
+	entries.keySet().retainAll(hostIds);
+    }
+
+    private static class Entry {
+	private final Date modifiedDate;
+	private final String validTo;
+	private final Boolean trusted;
+	private final String keyId;
+	private final HostDetails details;
+
+	private Entry(AhPublishedHost host, String keyId, HostDetails details) {
+	    this.modifiedDate = host.getModifiedDate();
+	    this.validTo = host.getValidTo();
+	    this.trusted = host.getTrusted();
+	    this.keyId = keyId;
+	    this.details = details;
+	}
+
+	private boolean matches(AhPublishedHost host, String currentKeyId) {
+	    return equals(modifiedDate, host.getModifiedDate()) && equals(validTo, host.getValidTo())
+		    && equals(trusted, host.getTrusted()) && equals(keyId, currentKeyId);
+	}
+
+	private static boolean equals(Object a, Object b) {
+	    return a == null ? b == null : a.equals(b);
+	}
+    }
+}
@@ -11,16 +11,9 @@
 package com.intel.attestationhub.manager;
 
 import java.io.*;
-import java.security.*;
-import java.security.cert.CertificateException;
-import java.security.interfaces.RSAPublicKey;
-import java.security.spec.InvalidKeySpecException;
-import java.security.spec.PKCS8EncodedKeySpec;
-import java.security.spec.X509EncodedKeySpec;
 import java.util.*;
 
 import com.intel.attestationhub.mapper.TenantMapper;
-import com.intel.dcsg.cpg.crypto.Sha1Digest;
 import com.intel.mtwilson.attestationhub.controller.AhTenantPluginCredentialJpaController;
 import com.intel.mtwilson.attestationhub.controller.exceptions.NonexistentEntityException;
 import com.intel.mtwilson.attestationhub.data.AhTenantPluginCredential;
@@ -36,19 +29,17 @@ import com.intel.attestationhub.api.PublishData;
 import com.intel.attestationhub.api.Tenant;
 import com.intel.attestationhub.api.Tenant.Plugin;
 import com.intel.attestationhub.plugin.EndpointPlugin;
+import com.intel.attestationhub.plugin.PartialUpdateEndpointPlugin;
 import com.intel.attestationhub.plugin.EndpointPluginFactory;
-import com.intel.attestationhub.service.AttestationHubService;
-import com.intel.attestationhub.service.impl.AttestationHubServiceImpl;
 import com.intel.mtwilson.Folders;
+import com.intel.mtwilson.attestationhub.common.AttestationHubConfigUtil;
 import com.intel.mtwilson.attestationhub.common.Constants;
+import com.intel.mtwilson.attestationhub.controller.AhMappingJpaController;
 import com.intel.mtwilson.attestationhub.controller.AhTenantJpaController;
-import com.intel.mtwilson.attestationhub.data.AhHost;
-import com.intel.mtwilson.attestationhub.data.AhMapping;
+import com.intel.mtwilson.attestationhub.data.AhPublishedHost;
 import com.intel.mtwilson.attestationhub.data.AhTenant;
 import com.intel.mtwilson.attestationhub.exception.AttestationHubException;
 import com.intel.mtwilson.attestationhub.service.PersistenceServiceFactory;
-import org.bouncycastle.util.io.pem.PemObject;
-import org.bouncycastle.util.io.pem.PemReader;
 
 /**
  * @author Vijay Prakash
@@ -60,7 +51,15 @@ public class PluginManager {
     private static final String PUBLIC_KEY_PATH = Folders.configuration() + File.separator
 		+ Constants.PUBLIC_KEY_FILE;
 
+    private static final int DEFAULT_PUBLISH_TENANT_THREADS = 4;
+    private static final int DEFAULT_PUBLISH_MAX_CONCURRENT_PER_PLUGIN = 4;
+    private static final int DEFAULT_PUBLISH_TIMEOUT_SECONDS = 300;
+    private static final int DEFAULT_PUBLISH_FULL_SYNC_INTERVAL_MINUTES = 60;
+
     private static PluginManager pluginManager = null;
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private final TrustReportSigner trustReportSigner = new TrustReportSigner(PRIVATE_KEY_PATH, PUBLIC_KEY_PATH);
+    private final HostDetailsCache hostDetailsCache = new HostDetailsCache();
 
     public static PluginManager getInstance() {
 	if (pluginManager == null) {
@@ -79,51 +78,88 @@ public class PluginManager {
 	}
 	log.info("Fetched {} tenants", ahTenantList.size());
 
-	AttestationHubService attestationHubService = AttestationHubServiceImpl.getInstance();
-	for (AhTenant ahTenant : ahTenantList) {
-	    Tenant readTenantConfig;
-	    try {
-		readTenantConfig = TenantMapper.mapJpatoApi(ahTenant);
-		log.info("Retrieved configuration for the tenant: {}", ahTenant.getId());
-	    } catch (AttestationHubException e) {
-		log.error("Error reading configuration for the tenant {}", ahTenant.getId(), e);
-		continue;
+	PersistenceServiceFactory persistenceServiceFactory = PersistenceServiceFactory.getInstance();
+	AhMappingJpaController mappingController = persistenceServiceFactory.getTenantToHostMappingController();
+	final Map<String, List<AhPublishedHost>> hostsByTenant = mappingController.findActiveHostsByTenant();
+	log.info("Fetched active hosts of {} tenants", hostsByTenant.size());
+
+	final PublishWatermarks watermarks = createPublishWatermarks(persistenceServiceFactory);
+	final PluginPushDispatcher dispatcher = new PluginPushDispatcher(
+		AttestationHubConfigUtil.getPositiveInt(Constants.ATTESTATION_HUB_PUBLISH_TENANT_THREADS,
+			DEFAULT_PUBLISH_TENANT_THREADS),
+		AttestationHubConfigUtil.getPositiveInt(Constants.ATTESTATION_HUB_PUBLISH_MAX_CONCURRENT_PER_PLUGIN,
+			DEFAULT_PUBLISH_MAX_CONCURRENT_PER_PLUGIN),
+		AttestationHubConfigUtil.getPositiveInt(Constants.ATTESTATION_HUB_PUBLISH_TIMEOUT_SECONDS,
+			DEFAULT_PUBLISH_TIMEOUT_SECONDS));
+	for (final AhTenant ahTenant : ahTenantList) {
+	    dispatcher.submitTenant(ahTenant.getId(), new Runnable() {
+		@Override
+		public void run() {
+		    publishTenantData(ahTenant, hostsByTenant.get(ahTenant.getId()), watermarks, dispatcher);
+		}
+	    });
+	}
+	dispatcher.awaitCompletion();
+
+	Set<String> publishedHostIds = new HashSet<>();
+	for (List<AhPublishedHost> tenantHosts : hostsByTenant.values()) {
+	    for (AhPublishedHost host : tenantHosts) {
+		publishedHostIds.add(host.getId());
 	    }
+	}
+	hostDetailsCache.retain(publishedHostIds);
+	log.info("Publishing data to plugins complete");
+    }
 
-	    List<Plugin> plugins = readTenantConfig.getPlugins();
-	    Collection<AhMapping> ahMappingCollection = ahTenant.getAhMappingCollection();
-	    List<HostDetails> hostsData = new ArrayList<HostDetails>();
-	    for (AhMapping ahMapping : ahMappingCollection) {
-		if (ahMapping.getDeleted() != null && ahMapping.getDeleted()) {
-		    log.info("Mapping {} is not active. Skipping. ", ahMapping.getId());
-		    continue;
-		}
+    private PublishWatermarks createPublishWatermarks(PersistenceServiceFactory persistenceServiceFactory) {
+	if (!Boolean.valueOf(AttestationHubConfigUtil.get(Constants.ATTESTATION_HUB_PUBLISH_INCREMENTAL_ENABLED, "true"))) {
+	    return null;
+	}
+	return new PublishWatermarks(persistenceServiceFactory.getPublishWatermarkController(),
+		AttestationHubConfigUtil.getPositiveInt(Constants.ATTESTATION_HUB_PUBLISH_FULL_SYNC_INTERVAL_MINUTES,
+			DEFAULT_PUBLISH_FULL_SYNC_INTERVAL_MINUTES));
+    }
 
-		String hostHardwareUuid = ahMapping.getHostHardwareUuid();
-		AhHost host;
-		try {
-		    host = attestationHubService.findActiveHostByHardwareUuid(hostHardwareUuid);
-		} catch (AttestationHubException e) {
-		    log.error("Unable to find an active host with hardware id={}", hostHardwareUuid, e);
-		    continue;
-		}
-		HostDetails details = populateHostDetails(host);
-		if (details != null) {
-		    log.debug("Adding host details of host uuid: {} to the data published to the controller",
-			    host.getId());
-		    hostsData.add(details);
-		} else {
-		    log.error("Populate host details for host uuid: {} returned NULL", host.getId());
-		}
+    private void publishTenantData(AhTenant ahTenant, List<AhPublishedHost> tenantHosts,
+	    PublishWatermarks watermarks, PluginPushDispatcher dispatcher) {
+	if (tenantHosts == null || tenantHosts.isEmpty()) {
+	    log.info("No host data available for tenant: {}", ahTenant.getId());
+	    return;
+	}
+	Tenant readTenantConfig;
+	try {
+	    readTenantConfig = TenantMapper.mapJpatoApi(ahTenant);
+	    log.info("Retrieved configuration for the tenant: {}", ahTenant.getId());
+	} catch (AttestationHubException e) {
+	    log.error("Error reading configuration for the tenant {}", ahTenant.getId(), e);
+	    return;
+	}
+
+	List<Plugin> plugins = readTenantConfig.getPlugins();
+	String keyId = getSigningKeyId();
+	HostDetailsCache.Loader loader = new HostDetailsCache.Loader() {
+	    @Override
+	    public HostDetails load(AhPublishedHost host) {
+		return populateHostDetails(host);
 	    }
-	    if (hostsData.size() == 0) {
-		log.info("No host data available for tenant: {}", ahTenant.getId());
-		continue;
+	};
+	List<HostDetails> hostsData = new ArrayList<HostDetails>(tenantHosts.size());
+	for (AhPublishedHost host : tenantHosts) {
+	    HostDetails details = hostDetailsCache.get(host, keyId, loader);
+	    if (details != null) {
+		log.debug("Adding host details of host uuid: {} to the data published to the controller",
+			host.getId());
+		hostsData.add(details);
+	    } else {
+		log.error("Populate host details for host uuid: {} returned NULL", host.getId());
 	    }
-	    log.info("Publishing data to the configured plugins for the tenant: {}", ahTenant.getId());
-	    processDataToPlugins(ahTenant, hostsData, plugins);
 	}
-	log.info("Publishing data to plugins complete");
+	if (hostsData.size() == 0) {
+	    log.info("No host data available for tenant: {}", ahTenant.getId());
+	    return;
+	}
+	log.info("Publishing data to the configured plugins for the tenant: {}", ahTenant.getId());
+	processDataToPlugins(ahTenant, hostsData, plugins, watermarks, dispatcher);
     }
 
     private List<AhTenant> retrievAllTenants() {
@@ -147,7 +183,7 @@ public class PluginManager {
 	return activeTenants;
     }
 
-    private HostDetails populateHostDetails(AhHost host) {
+    private HostDetails populateHostDetails(AhPublishedHost host) {
 	if (host == null) {
 	    return null;
 	}
@@ -165,7 +201,6 @@ public class PluginManager {
 
 	Map<String, List<String>> assetTags = new HashMap<>();
 	Map<String, String> hardwareFeatures = new HashMap<>();
-	ObjectMapper objectMapper = new ObjectMapper();
 
 	if (StringUtils.isNotBlank(host.getAssetTags())) {
 	    try {
@@ -237,55 +272,69 @@ public class PluginManager {
 	return plugin;
     }
 
-    private void processDataToPlugins(AhTenant ahTenant, List<HostDetails> hostsData, List<Plugin> plugins) {
+    private void processDataToPlugins(final AhTenant ahTenant, List<HostDetails> hostsData, List<Plugin> plugins,
+	    final PublishWatermarks watermarks, PluginPushDispatcher dispatcher) {
 	if (plugins == null || hostsData == null || ahTenant == null) {
 	    return;
 	}
-	for (Plugin plugin : plugins) {
-	    try {
-		PublishData data = new PublishData();
-		data.tenantId = ahTenant.getId();
+	Map<String, String> hostDigests = watermarks == null ? null : PublishWatermarks.digestHosts(hostsData);
+	List<String> pluginNames = new ArrayList<>(plugins.size());
+	List<PluginPushDispatcher.PushTask> pushTasks = new ArrayList<>(plugins.size());
+	for (final Plugin plugin : plugins) {
+	    final EndpointPlugin endpointPlugin = EndpointPluginFactory.getPluginImpl(plugin);
+	    if (endpointPlugin == null) {
+		log.info("No plugin available for : {} for tenant with name : {} and id: {}", plugin.getName(), ahTenant.getTenantName(), ahTenant.getId());
+		continue;
+	    }
+	    final PublishWatermarks.Publication publication;
+	    final PublishData data = new PublishData();
+	    data.tenantId = ahTenant.getId();
+	    if (watermarks == null) {
+		publication = null;
 		data.hostDetailsList = hostsData;
-		EndpointPlugin endpointPlugin = EndpointPluginFactory.getPluginImpl(plugin);
-		if (endpointPlugin == null) {
-		    log.info("No plugin available for : {} for tenant with name : {} and id: {}", plugin.getName(), ahTenant.getTenantName(), ahTenant.getId());
+	    } else {
+		publication = watermarks.select(ahTenant.getId(), plugin.getName(), hostsData, hostDigests,
+			endpointPlugin instanceof PartialUpdateEndpointPlugin);
+		if (publication.getHosts().isEmpty()) {
+		    log.info("No changes to publish to plugin : {} of tenant with name : {} and id: {}", plugin.getName(), ahTenant.getTenantName(), ahTenant.getId());
+		    watermarks.published(publication);
 		    continue;
 		}
-		// Adding plugin credentials before pushing data to tenant
-		plugin = addCredentialToPlugin(ahTenant, plugin);
-		log.info("Before pushing data to plugin : {} of tenant with name : {} and id: {}", plugin.getName(), ahTenant.getTenantName(), ahTenant.getId());
-		endpointPlugin.pushData(data, plugin);
-		log.info("After pushing data for plugin : {} of tenant with name : {} and id: {}", plugin.getName(), ahTenant.getTenantName(), ahTenant.getId());
-	    } catch (AttestationHubException e) {
-		log.error("Error pushing data to plugin : {} of tenant with name : {} and id: {}", plugin.getName(), ahTenant.getTenantName(), ahTenant.getId(), e);
-		continue;
+		log.info("Publishing {} of {} hosts to plugin : {} of tenant with id: {}{}", publication.getHosts().size(),
+			hostsData.size(), plugin.getName(), ahTenant.getId(), publication.isFullSync() ? " (full sync)" : "");
+		data.hostDetailsList = publication.getHosts();
 	    }
+	    pluginNames.add(plugin.getName());
+	    pushTasks.add(new PluginPushDispatcher.PushTask() {
+		@Override
+		public void push() throws AttestationHubException {
+		    // Adding plugin credentials before pushing data to tenant
+		    Plugin pluginWithCredentials = addCredentialToPlugin(ahTenant, plugin);
+		    log.info("Before pushing data to plugin : {} of tenant with name : {} and id: {}", pluginWithCredentials.getName(), ahTenant.getTenantName(), ahTenant.getId());
+		    endpointPlugin.pushData(data, pluginWithCredentials);
+		    log.info("After pushing data for plugin : {} of tenant with name : {} and id: {}", pluginWithCredentials.getName(), ahTenant.getTenantName(), ahTenant.getId());
+		    if (publication != null) {
+			watermarks.published(publication);
+		    }
+		}
+	    });
 	}
-
+	dispatcher.push(ahTenant.getId(), pluginNames, pushTasks);
     }
     
+    private String getSigningKeyId() {
+	try {
+	    return trustReportSigner.getKeyId();
+	} catch (AttestationHubException e) {
+	    log.error("No private key found for encrypting trust report", e);
+	    return null;
+	}
+    }
+
     private String createSignedTrustReport(String trustReportWithAdditions) {
-	PrivateKey privateKey;
 	String signedTrustReport = null;
-	Map<String, Object> headers = new HashMap<>();
-	ObjectMapper objectMapper = new ObjectMapper();
 	try {
-	    privateKey = loadPrivateKey();
-	    headers.put("alg","RS384");
-	    headers.put("typ","JWT");
-	    headers.put("kid",getKeyId());
-	    String jwtHeader = objectMapper.writeValueAsString(headers);
-	    if (privateKey == null) {
-	        log.error("No privateKey for creating signed report");
-		return null;
-	    }
-	    Signature signature = Signature.getInstance("SHA384withRSA");
-	    signature.initSign(privateKey);
-	    byte[] trustReportAsBytes = trustReportWithAdditions.getBytes();
-	    signature.update(trustReportAsBytes);
-	    signedTrustReport = Base64.getUrlEncoder().encodeToString(jwtHeader.getBytes())+ "." + Base64.getUrlEncoder().encodeToString(trustReportWithAdditions.getBytes())
-				    + "." +Base64.getUrlEncoder().encodeToString(signature.sign());
-
+	    signedTrustReport = trustReportSigner.sign(trustReportWithAdditions);
 	}
 	catch (AttestationHubException e) {
             log.error("No private key found for encrypting trust report", e);
@@ -293,105 +342,8 @@ public class PluginManager {
 	catch (Exception exc) {
 	    log.error("Error while signing trust report", exc);
 	}
-	log.info("JWS format of trust report: {}", signedTrustReport);
+	log.debug("JWS format of trust report: {}", signedTrustReport);
 	return  signedTrustReport;
     }
 
-    private PrivateKey loadPrivateKey() throws AttestationHubException {
-	File prikeyFile = new File(PRIVATE_KEY_PATH);
-	if (!(prikeyFile.exists())) {
-	    throw new AttestationHubException("Private key unavailable for signing the report");
-	}
-	FileInputStream fis = null;
-	try {
-	    fis = new FileInputStream(prikeyFile);
-	} catch (FileNotFoundException e) {
-	    log.error("Unable to locate private key file at {}", prikeyFile.getAbsolutePath(), e);
-	    throw new AttestationHubException("Unable to locate private key file at " + PRIVATE_KEY_PATH, e);
-	}
-	DataInputStream dis = new DataInputStream(fis);
-	byte[] keyBytes = new byte[(int) prikeyFile.length()];
-	try {
-	    dis.readFully(keyBytes);
-	} catch (IOException e) {
-	    log.error("Unable to read private key file at {}", prikeyFile.getAbsolutePath(), e);
-	}
-	try {
-	    if (fis != null) {
-		fis.close();
-	    }
-	    if (dis != null) {
-	 	dis.close();
-	    }
-	} catch (IOException e) {
-	    log.error("Unable to close stream to private key file at {}", prikeyFile.getAbsolutePath(), e);
-	}
-
-	PKCS8EncodedKeySpec spec = new PKCS8EncodedKeySpec(keyBytes);
-	KeyFactory kf = null;
-	try {
-	    kf = KeyFactory.getInstance("RSA");
-	} catch (NoSuchAlgorithmException e) {
-	    log.error("Error", e);
-	    throw new AttestationHubException(e);
-	}
-	PrivateKey generatePrivate = null;
-	try {
-	    generatePrivate = kf.generatePrivate(spec);
-	} catch (InvalidKeySpecException e) {
-	    log.error("Error", e);
-	    throw new AttestationHubException(e);
-	}
-	return generatePrivate;
-    }
-
-    private String getKeyId() throws AttestationHubException, IOException, CertificateException {
-	PublicKey pubkey = loadPublicKey();
-	pubkey.getEncoded();
-	String keyId = Sha1Digest.digestOf(pubkey.getEncoded()).toBase64();
-    	return keyId;
-    }
-
-    private PublicKey loadPublicKey() throws AttestationHubException, IOException {
-	File pubKeyFile = new File(PUBLIC_KEY_PATH);
-	if (!(pubKeyFile.exists())) {
-	    throw new AttestationHubException("Private key unavailable for signing the report");
-	}
-	FileInputStream pubKeyIS = new FileInputStream(PUBLIC_KEY_PATH);
-	PemObject pemObject = null;
-	PemReader pemReader = new PemReader(new InputStreamReader(pubKeyIS));
-	try {
-	    pemObject = pemReader.readPemObject();
-	} catch (IOException e) {
-	    log.error("Error", e);
-	} finally {
-		pubKeyIS.close();
-		pemReader.close();
-	}
-
-	byte[] keyBytes;
-	if (pemObject == null) {
-		log.error("Error reading public key from file: {}", PUBLIC_KEY_PATH);
-		throw new AttestationHubException("Error reading public key");
-	}
-	keyBytes = pemObject.getContent();
-	X509EncodedKeySpec pubKeySpec = new X509EncodedKeySpec(keyBytes);
-
-	KeyFactory kf = null;
-	try {
-	    kf = KeyFactory.getInstance("RSA");
-	} catch (NoSuchAlgorithmException e) {
-	    log.error("Error", e);
-	    throw new AttestationHubException(e);
-	}
-	PublicKey generatePublic = null;
-	try {
-	    generatePublic = (RSAPublicKey) kf.generatePublic(pubKeySpec);
-	} catch (InvalidKeySpecException e) {
-	    log.error("Error", e);
-	    throw new AttestationHubException(e);
-	}
-	return generatePublic;
-    }
-
 }
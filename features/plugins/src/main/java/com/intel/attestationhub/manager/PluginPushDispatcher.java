@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.attestationhub.manager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.intel.mtwilson.attestationhub.exception.AttestationHubException;
+
+/**
+ * Publishes the host data of several tenants concurrently. Tenants are
+ * prepared on a bounded pool, and every plugin push of a tenant runs on its own
+ * thread so it can be given up after the configured timeout. The number of
+ * concurrent pushes to one plugin type is bounded as well, so a slow endpoint
+ * only holds back the tenants using that plugin. The outcome and duration of
+ * every push is logged once all tenants are done.
+ */
+class PluginPushDispatcher {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(PluginPushDispatcher.class);
+
+    interface PushTask {
+	void push() throws AttestationHubException;
+    }
+
+    private final int maxConcurrentPerPlugin;
+    private final long timeoutMillis;
+    private final ExecutorService tenantExecutor;
+    private final ExecutorService pushExecutor;
+    private final List<Future<?>> tenantFutures = new ArrayList<>();
+    private final ConcurrentMap<String, Semaphore> pluginPermits = new ConcurrentHashMap<>();
+    private final Queue<String> summary = new ConcurrentLinkedQueue<>();
+
+    PluginPushDispatcher(int tenantThreads, int maxConcurrentPerPlugin, long timeoutSeconds) {
+	this.maxConcurrentPerPlugin = maxConcurrentPerPlugin;
+	this.timeoutMillis = TimeUnit.SECONDS.toMillis(timeoutSeconds);
+	this.tenantExecutor = Executors.newFixedThreadPool(tenantThreads, new NamedThreadFactory("plugin-tenant-"));
+	this.pushExecutor = Executors.newCachedThreadPool(new NamedThreadFactory("plugin-push-"));
+    }
+
+    /**
+     * Runs the given work for a tenant on the tenant pool. The work is
+     * expected to call {@link #push(String, List, List)} once its data is
+     * ready.
+     */
+    void submitTenant(final String tenantId, final Runnable tenantWork) {
+	tenantFutures.add(tenantExecutor.submit(new Runnable() {
+	    @Override
+	    public void run() {
+		long start = System.currentTimeMillis();
+		try {
+		    tenantWork.run();
+		} catch (RuntimeException e) {
+		    log.error("Error publishing data of tenant: {}", tenantId, e);
+		}
+		summary.add("tenant " + tenantId + " published in " + (System.currentTimeMillis() - start) + " ms");
+	    }
+	}));
+    }
+
+    /**
+     * Pushes to the given plugins of a tenant concurrently and waits until each
+     * push finished or ran into the timeout. A failed or timed out push does
+     * not affect the other ones.
+     *
+     * @param pushTasks
+     *            one task per plugin, in the order of pluginNames
+     */
+    void push(String tenantId, List<String> pluginNames, List<PushTask> pushTasks) {
+	List<Future<?>> futures = new ArrayList<>(pushTasks.size());
+	List<Long> deadlines = new ArrayList<>(pushTasks.size());
+	for (int i = 0; i < pushTasks.size(); i++) {
+	    futures.add(submitPush(tenantId, pluginNames.get(i), pushTasks.get(i)));
+	    deadlines.add(System.currentTimeMillis() + timeoutMillis);
+	}
+	for (int i = 0; i < futures.size(); i++) {
+	    Future<?> future = futures.get(i);
+	    if (future == null) {
+		continue;
+	    }
+	    String pluginName = pluginNames.get(i);
+	    try {
+		future.get(Math.max(0, deadlines.get(i) - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+	    } catch (TimeoutException e) {
+		future.cancel(true);
+		log.error("Push to plugin : {} of tenant: {} did not complete within {} ms", pluginName, tenantId,
+			timeoutMillis);
+		summary.add("tenant " + tenantId + " plugin " + pluginName + " timed out after " + timeoutMillis + " ms");
+	    } catch (ExecutionException e) {
+		log.error("Unexpected error pushing data to plugin : {} of tenant: {}", pluginName, tenantId, e.getCause());
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+		return;
+	    }
+	}
+    }
+
+    private Future<?> submitPush(final String tenantId, final String pluginName, final PushTask pushTask) {
+	final Semaphore permits = getPluginPermits(pluginName);
+	try {
+	    if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+		log.error("No free slot to push data to plugin : {} of tenant: {} within {} ms", pluginName, tenantId,
+			timeoutMillis);
+		summary.add("tenant " + tenantId + " plugin " + pluginName + " skipped, no free slot");
+		return null;
+	    }
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    return null;
+	}
+	// the permit is released by the push itself, so a push that hangs past
+	// its timeout keeps occupying its slot
+	return pushExecutor.submit(new Runnable() {
+	    @Override
+	    public void run() {
+		long start = System.currentTimeMillis();
+		String outcome = "succeeded";
+		try {
+		    pushTask.push();
+		} catch (AttestationHubException e) {
+		    outcome = "failed";
+		    log.error("Error pushing data to plugin : {} of tenant: {}", pluginName, tenantId, e);
+		} catch (RuntimeException e) {
+		    outcome = "failed";
+		    log.error("Error pushing data to plugin : {} of tenant: {}", pluginName, tenantId, e);
+		} finally {
+		    permits.release();
+		}
+		summary.add("tenant " + tenantId + " plugin " + pluginName + " " + outcome + " in "
+			+ (System.currentTimeMillis() - start) + " ms");
+	    }
+	});
+    }
+
+    private Semaphore getPluginPermits(String pluginName) {
+	Semaphore permits = pluginPermits.get(pluginName);
+	if (permits == null) {
+	    Semaphore created = new Semaphore(maxConcurrentPerPlugin);
+	    permits = pluginPermits.putIfAbsent(pluginName, created);
+	    if (permits == null) {
+		permits = created;
+	    }
+	}
+	return permits;
+    }
+
+    /**
+     * Waits for all submitted tenants, logs the push summary and releases the
+     * threads of the dispatcher.
+     */
+    void awaitCompletion() {
+	try {
+	    for (Future<?> tenantFuture : tenantFutures) {
+		try {
+		    tenantFuture.get();
+		} catch (ExecutionException e) {
+		    log.error("Error publishing tenant data", e.getCause());
+		}
+	    }
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    log.error("Interrupted while publishing data to plugins", e);
+	} finally {
+	    tenantExecutor.shutdownNow();
+	    pushExecutor.shutdownNow();
+	}
+	log.info("Plugin publish summary:");
+	for (String line : summary) {
+	    log.info("  {}", line);
+	}
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+	private final String prefix;
+	private final AtomicInteger count = new AtomicInteger();
+
+	private NamedThreadFactory(String prefix) {
+	    this.prefix = prefix;
+	}
+
+	@Override
+	public Thread newThread(Runnable runnable) {
+	    Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+	    thread.setDaemon(true);
+	    return thread;
+	}
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.attestationhub.manager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.intel.attestationhub.api.HostDetails;
+import com.intel.dcsg.cpg.crypto.Sha256Digest;
+import com.intel.dcsg.cpg.io.UUID;
+import com.intel.mtwilson.attestationhub.controller.AhPublishWatermarkJpaController;
+import com.intel.mtwilson.attestationhub.data.AhPublishWatermark;
+
+/**
+ * Decides what has to be published to a plugin of a tenant by comparing the
+ * digests of the current host details with the watermark stored after the
+ * last successful publish. Nothing is sent when no host changed, and plugins
+ * that update hosts independently only receive the changed hosts. Everything
+ * is sent again once the full sync interval has passed, so that changes made
+ * at the endpoint itself are corrected eventually.
+ */
+class PublishWatermarks {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(PublishWatermarks.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final AhPublishWatermarkJpaController watermarkController;
+    private final long fullSyncIntervalMillis;
+
+    PublishWatermarks(AhPublishWatermarkJpaController watermarkController, long fullSyncIntervalMinutes) {
+	this.watermarkController = watermarkController;
+	this.fullSyncIntervalMillis = TimeUnit.MINUTES.toMillis(fullSyncIntervalMinutes);
+    }
+
+    /**
+     * @return the digest of every host keyed by host id, in the order of the
+     *         given list
+     */
+    static Map<String, String> digestHosts(List<HostDetails> hosts) {
+	Map<String, String> digests = new LinkedHashMap<>();
+	for (HostDetails host : hosts) {
+	    StringBuilder content = new StringBuilder();
+	    content.append(host.uuid).append('\n').append(host.hardwareUuid).append('\n').append(host.hostname)
+		    .append('\n').append(host.signed_trust_report != null ? host.signed_trust_report : host.trust_report);
+	    digests.put(host.uuid, Sha256Digest.digestOf(content.toString().getBytes(StandardCharsets.UTF_8))
+		    .toHexString());
+	}
+	return digests;
+    }
+
+    /**
+     * @return the hosts to publish, empty if the plugin already has the
+     *         current data of all hosts
+     */
+    Publication select(String tenantId, String pluginName, List<HostDetails> hosts, Map<String, String> hostDigests,
+	    boolean partialUpdates) {
+	String digest = digestOf(hostDigests);
+	AhPublishWatermark watermark = null;
+	try {
+	    watermark = watermarkController.findByTenantIdAndPluginName(tenantId, pluginName);
+	} catch (RuntimeException e) {
+	    log.error("Unable to read the publish watermark of plugin : {} of tenant: {}", pluginName, tenantId, e);
+	}
+	long now = System.currentTimeMillis();
+	if (watermark == null || watermark.getFullSyncTs() == null
+		|| now - watermark.getFullSyncTs().getTime() >= fullSyncIntervalMillis) {
+	    return new Publication(tenantId, pluginName, hosts, hostDigests, digest, true, watermark);
+	}
+	if (digest.equals(watermark.getDigest())) {
+	    return new Publication(tenantId, pluginName, Collections.<HostDetails> emptyList(), hostDigests, digest,
+		    false, watermark);
+	}
+	Map<String, String> publishedDigests = partialUpdates ? readHostDigests(watermark) : null;
+	if (publishedDigests == null) {
+	    return new Publication(tenantId, pluginName, hosts, hostDigests, digest, false, watermark);
+	}
+	List<HostDetails> changedHosts = new ArrayList<>();
+	for (HostDetails host : hosts) {
+	    if (!hostDigests.get(host.uuid).equals(publishedDigests.get(host.uuid))) {
+		changedHosts.add(host);
+	    }
+	}
+	return new Publication(tenantId, pluginName, changedHosts, hostDigests, digest, false, watermark);
+    }
+
+    /**
+     * Stores the watermark of a publication once the plugin accepted it
+     */
+    void published(Publication publication) {
+	AhPublishWatermark watermark = publication.watermark;
+	if (!publication.fullSync && watermark != null && publication.digest.equals(watermark.getDigest())) {
+	    return;
+	}
+	if (watermark == null) {
+	    watermark = new AhPublishWatermark(new UUID().toString());
+	    watermark.setTenantId(publication.tenantId);
+	    watermark.setPluginName(publication.pluginName);
+	}
+	Date now = new Date();
+	watermark.setDigest(publication.digest);
+	watermark.setPublishedTs(now);
+	if (publication.fullSync) {
+	    watermark.setFullSyncTs(now);
+	}
+	try {
+	    watermark.setHostDigests(objectMapper.writeValueAsString(publication.hostDigests));
+	    watermarkController.save(watermark);
+	} catch (JsonProcessingException | RuntimeException e) {
+	    // the next publish is a full one
+	    log.error("Unable to save the publish watermark of plugin : {} of tenant: {}", publication.pluginName,
+		    publication.tenantId, e);
+	}
+    }
+
+    private static String digestOf(Map<String, String> hostDigests) {
+	StringBuilder content = new StringBuilder();
+	for (Map.Entry<String, String> entry : new TreeMap<>(hostDigests).entrySet()) {
+	    content.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+	}
+	return Sha256Digest.digestOf(content.toString().getBytes(StandardCharsets.UTF_8)).toHexString();
+    }
+
+    private static Map<String, String> readHostDigests(AhPublishWatermark watermark) {
+	if (watermark.getHostDigests() == null) {
+	    return null;
+	}
+	try {
+	    return objectMapper.readValue(watermark.getHostDigests(), new TypeReference<Map<String, String>>() {
+	    });
+	} catch (IOException e) {
+	    log.error("Unable to read the host digests of publish watermark: {}", watermark.getId(), e);
+	    return null;
+	}
+    }
+
+    static class Publication {
+	private final String tenantId;
+	private final String pluginName;
+	private final List<HostDetails> hosts;
+	private final Map<String, String> hostDigests;
+	private final String digest;
+	private final boolean fullSync;
+	private final AhPublishWatermark watermark;
+
+	private Publication(String tenantId, String pluginName, List<HostDetails> hosts,
+		Map<String, String> hostDigests, String digest, boolean fullSync, AhPublishWatermark watermark) {
+	    this.tenantId = tenantId;
+	    this.pluginName = pluginName;
+	    this.hosts = hosts;
+	    this.hostDigests = hostDigests;
+	    this.digest = digest;
+	    this.fullSync = fullSync;
+	    this.watermark = watermark;
+	}
+
+	List<HostDetails> getHosts() {
+	    return hosts;
+	}
+
+	boolean isFullSync() {
+	    return fullSync;
+	}
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2019 Intel Corporation
+ * SPDX-License-Identifier: BSD-3-Clause
+ */
+
+package com.intel.attestationhub.manager;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.bouncycastle.util.io.pem.PemObject;
+import org.bouncycastle.util.io.pem.PemReader;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.intel.dcsg.cpg.crypto.Sha1Digest;
+import com.intel.mtwilson.attestationhub.exception.AttestationHubException;
+
+/**
+ * Signs trust reports as JWS with the hub key pair. The private key, the key
+ * id and the encoded JWT header are loaded once and kept until the
+ * modification time of either key file changes. A Signature instance is kept
+ * per thread so concurrent signers do not contend on it.
+ */
+class TrustReportSigner {
+    private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(TrustReportSigner.class);
+    private static final String SIGNATURE_ALGORITHM = "SHA384withRSA";
+
+    private final File privateKeyFile;
+    private final File publicKeyFile;
+    private volatile SigningKey signingKey;
+    private final ThreadLocal<Signature> signatures = new ThreadLocal<Signature>() {
+	@Override
+	protected Signature initialValue() {
+	    try {
+		return Signature.getInstance(SIGNATURE_ALGORITHM);
+	    } catch (NoSuchAlgorithmException e) {
+		throw new IllegalStateException(SIGNATURE_ALGORITHM + " is not available", e);
+	    }
+	}
+    };
+
+    TrustReportSigner(String privateKeyPath, String publicKeyPath) {
+	this.privateKeyFile = new File(privateKeyPath);
+	this.publicKeyFile = new File(publicKeyPath);
+    }
+
+    /**
+     * @return the report as header.payload.signature, each part base64url
+     *         encoded
+     */
+    String sign(String trustReport) throws AttestationHubException, GeneralSecurityException {
+	SigningKey key = getSigningKey();
+	Signature signature = signatures.get();
+	signature.initSign(key.privateKey);
+	byte[] trustReportAsBytes = trustReport.getBytes();
+	signature.update(trustReportAsBytes);
+	Base64.Encoder encoder = Base64.getUrlEncoder();
+	return key.encodedHeader + "." + encoder.encodeToString(trustReportAsBytes) + "."
+		+ encoder.encodeToString(signature.sign());
+    }
+
+    /**
+     * @return the id of the key reports are currently signed with
+     */
+    String getKeyId() throws AttestationHubException {
+	return getSigningKey().keyId;
+    }
+
+    private SigningKey getSigningKey() throws AttestationHubException {
+	SigningKey key = signingKey;
+	if (key != null && key.isCurrent(privateKeyFile, publicKeyFile)) {
+	    return key;
+	}
+	synchronized (this) {
+	    key = signingKey;
+	    if (key == null || !key.isCurrent(privateKeyFile, publicKeyFile)) {
+		log.info("Loading the trust report signing key from {}", privateKeyFile.getAbsolutePath());
+		key = loadSigningKey();
+		signingKey = key;
+	    }
+	    return key;
+	}
+    }
+
+    private SigningKey loadSigningKey() throws AttestationHubException {
+	// read the modification times first so a concurrent update triggers another reload
+	long privateKeyModified = privateKeyFile.lastModified();
+	long publicKeyModified = publicKeyFile.lastModified();
+	PrivateKey privateKey = loadPrivateKey();
+	String keyId = Sha1Digest.digestOf(loadPublicKey().getEncoded()).toBase64();
+	Map<String, Object> headers = new HashMap<>();
+	headers.put("alg", "RS384");
+	headers.put("typ", "JWT");
+	headers.put("kid", keyId);
+	String jwtHeader;
+	try {
+	    jwtHeader = new ObjectMapper().writeValueAsString(headers);
+	} catch (JsonProcessingException e) {
+	    throw new AttestationHubException("Error creating the JWT header", e);
+	}
+	return new SigningKey(privateKey, keyId, Base64.getUrlEncoder().encodeToString(jwtHeader.getBytes()),
+		privateKeyModified, publicKeyModified);
+    }
+
+    private PrivateKey loadPrivateKey() throws AttestationHubException {
+	if (!(privateKeyFile.exists())) {
+	    throw new AttestationHubException("Private key unavailable for signing the report");
+	}
+	FileInputStream fis = null;
+	try {
+	    fis = new FileInputStream(privateKeyFile);
+	} catch (FileNotFoundException e) {
+	    log.error("Unable to locate private key file at {}", privateKeyFile.getAbsolutePath(), e);
+	    throw new AttestationHubException("Unable to locate private key file at " + privateKeyFile.getPath(), e);
+	}
+	DataInputStream dis = new DataInputStream(fis);
+	byte[] keyBytes = new byte[(int) privateKeyFile.length()];
+	try {
+	    dis.readFully(keyBytes);
+	} catch (IOException e) {
+	    log.error("Unable to read private key file at {}", privateKeyFile.getAbsolutePath(), e);
+	    throw new AttestationHubException("Unable to read private key file at " + privateKeyFile.getPath(), e);
+	} finally {
+	    try {
+		dis.close();
+	    } catch (IOException e) {
+		log.error("Unable to close stream to private key file at {}", privateKeyFile.getAbsolutePath(), e);
+	    }
+	}
+
+	PKCS8EncodedKeySpec spec = new PKCS8EncodedKeySpec(keyBytes);
+	try {
+	    return KeyFactory.getInstance("RSA").generatePrivate(spec);
+	} catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+	    log.error("Error", e);
+	    throw new AttestationHubException(e);
+	}
+    }
+
+    private PublicKey loadPublicKey() throws AttestationHubException {
+	if (!(publicKeyFile.exists())) {
+	    throw new AttestationHubException("Public key unavailable for signing the report");
+	}
+	PemObject pemObject = null;
+	PemReader pemReader = null;
+	try {
+	    pemReader = new PemReader(new InputStreamReader(new FileInputStream(publicKeyFile)));
+	    pemObject = pemReader.readPemObject();
+	} catch (IOException e) {
+	    log.error("Error", e);
+	} finally {
+	    if (pemReader != null) {
+		try {
+		    pemReader.close();
+		} catch (IOException e) {
+		    log.error("Unable to close stream to public key file at {}", publicKeyFile.getAbsolutePath(), e);
+		}
+	    }
+	}
+
+	if (pemObject == null) {
+	    log.error("Error reading public key from file: {}", publicKeyFile.getAbsolutePath());
+	    throw new AttestationHubException("Error reading public key");
+	}
+	X509EncodedKeySpec pubKeySpec = new X509EncodedKeySpec(pemObject.getContent());
+	try {
+	    return KeyFactory.getInstance("RSA").generatePublic(pubKeySpec);
+	} catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+	    log.error("Error", e);
+	    throw new AttestationHubException(e);
+	}
+    }
+
+    private static class SigningKey {
+	private final PrivateKey privateKey;
+	private final String keyId;
+	private final String encodedHeader;
+	private final long privateKeyModified;
+	private final long publicKeyModified;
+
+	private SigningKey(PrivateKey privateKey, String keyId, String encodedHeader, long privateKeyModified,
+		long publicKeyModified) {
+	    this.privateKey = privateKey;
+	    this.keyId = keyId;
+	    this.encodedHeader = encodedHeader;
+	    this.privateKeyModified = privateKeyModified;
+	    this.publicKeyModified = publicKeyModified;
+	}
+
+	private boolean isCurrent(File privateKeyFile, File publicKeyFile) {
+	    return privateKeyFile.lastModified() == privateKeyModified
+		    && publicKeyFile.lastModified() == publicKeyModified;
+	}
+
+	@Override
+	public String toString() {
+	    return "SigningKey[kid=" + keyId + "]";
+	}
+    }
+}
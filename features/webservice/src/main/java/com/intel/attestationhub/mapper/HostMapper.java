@@ -5,6 +5,7 @@
 
 package com.intel.attestationhub.mapper;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
@@ -12,6 +13,8 @@ import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.opensaml.saml.saml2.core.Assertion;
 import org.opensaml.saml.saml2.core.Attribute;
 import org.opensaml.saml.saml2.core.AttributeStatement;
@@ -21,6 +24,7 @@ import org.w3c.dom.Element;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.intel.attestationhub.api.MWHost;
+import com.intel.dcsg.cpg.crypto.Sha256Digest;
 import com.intel.dcsg.cpg.io.UUID;
 import com.intel.mtwilson.flavor.rest.v2.model.Host;
 import com.intel.mtwilson.flavor.rest.v2.model.Report;
@@ -155,6 +159,13 @@ public class HostMapper {
 	}
 	if (citHostReport != null) {
 	    ahHost.setSamlReport(citHostReport.getSaml());
+	    if (host.getTrustAssertion() != null && citHostReport.getSaml() != null) {
+		ahHost.setSamlIssueDate(host.getTrustAssertion().getDate());
+		ahHost.setSamlHash(getSamlHash(citHostReport.getSaml()));
+	    } else {
+		ahHost.setSamlIssueDate(null);
+		ahHost.setSamlHash(null);
+	    }
 	    FlavorStatusResponse trustResponse = convertToHostTrustResponse(citHost, trustTagValueList);
 	    ObjectMapper objectMapper = new ObjectMapper();
 	    try {
@@ -169,6 +180,20 @@ public class HostMapper {
 	return ahHost;
     }
 
+    /**
+     * Records the dates of an already verified SAML report on the host, so the
+     * expiry of the report can later be checked without verifying it again.
+     */
+    public static void mapTrustAssertionToAhHost(AhHost ahHost, TrustAssertion trustAssertion) {
+	ahHost.setValidTo(new DateTime(trustAssertion.getNotAfter().getTime(), DateTimeZone.UTC).toString());
+	ahHost.setSamlIssueDate(trustAssertion.getDate());
+	ahHost.setSamlHash(getSamlHash(ahHost.getSamlReport()));
+    }
+
+    private static String getSamlHash(String saml) {
+	return Sha256Digest.digestOf(saml.getBytes(StandardCharsets.UTF_8)).toHexString();
+    }
+
     public static AhHost mapHostToAhHost(MWHost host, AhHost ahHost) {
 	log.info("Before getting logged in user");
 	String currentUser = ShiroUtil.subjectUsername();
@@ -5,6 +5,7 @@
 
 package com.intel.attestationhub.service;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -74,4 +75,8 @@ public interface AttestationHubService {
 
     public void markHostAsUntrusted(AhHost ahHost) throws AttestationHubException;
 
+    public void markHostsAsDeleted(Collection<String> hostIds) throws AttestationHubException;
+
+    public void markHostsAsUntrusted(Collection<String> hostIds) throws AttestationHubException;
+
 }
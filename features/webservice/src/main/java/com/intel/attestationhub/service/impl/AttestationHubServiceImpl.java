@@ -44,9 +44,6 @@ import com.intel.mtwilson.attestationhub.data.AhMapping;
 import com.intel.mtwilson.attestationhub.data.AhTenant;
 import com.intel.mtwilson.attestationhub.exception.AttestationHubException;
 import com.intel.mtwilson.attestationhub.service.PersistenceServiceFactory;
-import org.joda.time.DateTime;
-import org.joda.time.format.DateTimeFormatter;
-import org.joda.time.format.ISODateTimeFormat;
 
 public class AttestationHubServiceImpl implements AttestationHubService {
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(AttestationHubServiceImpl.class);
@@ -239,6 +236,8 @@ public class AttestationHubServiceImpl implements AttestationHubService {
 			tenantController.edit(ahTenant);
 			deleteTenantPluginCredential(ahTenant);
 			createTenantPluginCredential(ahTenant, pluginCredentialsMap);
+			// the plugin configuration may have changed, publish everything again
+			persistenceServiceFactory.getPublishWatermarkController().destroyByTenantId(ahTenant.getId());
 		} else {
 			log.error("Cannot update tenant, data encryption key is not configured");
 			throw new AttestationHubException("Cannot update tenant, data encryption key is not configured");
@@ -271,6 +270,7 @@ public class AttestationHubServiceImpl implements AttestationHubService {
 	    for (AhMapping ahMapping : ahMappingCollection) {
 		deleteMapping(ahMapping.getId());
 	    }
+	    persistenceServiceFactory.getPublishWatermarkController().destroyByTenantId(tenantId);
 	} catch (NonexistentEntityException e) {
 	    String msg = "Invalid id: " + tenantId;
 	    log.error(msg, e);
@@ -432,7 +432,8 @@ public class AttestationHubServiceImpl implements AttestationHubService {
     /**
      * this method is called from the poller. This will create / edit hosts in
      * the attestation hub db based on the response from the attestation
-     * service.
+     * service. The hosts are written in chunks, each chunk with one lookup
+     * query and one transaction.
      * 
      * @param hostAttestationsMap
      * @throws AttestationHubException
@@ -446,20 +447,71 @@ public class AttestationHubServiceImpl implements AttestationHubService {
 	}
 
 	AhHostJpaController hostController = PersistenceServiceFactory.getInstance().getHostController();
-	List<String> savedAhHostIdList = new ArrayList<String>(hostAttestationsMap.size());
-	log.debug("Fetch all hosts from the attestation hub DB");
+	int chunkSize = AttestationHubConfigUtil.getPositiveInt(Constants.ATTESTATION_HUB_DB_BATCH_SIZE,
+		PersistenceServiceFactory.DEFAULT_BATCH_SIZE);
 
 	// the map passed to method has the key which is the ID of the
 	// host in the attestation db. the value of the map is a custom hub
 	// wrapper object
 	// which contains the Host and Host Attestation object for the host from
 	// Attestation service
-	for (String id : hostAttestationsMap.keySet()) {
-	    boolean ahHostExists = false;
-	    MWHost mwHost = hostAttestationsMap.get(id);
+	List<MWHost> mwHosts = new ArrayList<>(hostAttestationsMap.values());
+	for (int chunkStart = 0; chunkStart < mwHosts.size(); chunkStart += chunkSize) {
+	    saveHostsChunk(hostController, mwHosts.subList(chunkStart, Math.min(chunkStart + chunkSize, mwHosts.size())));
+	}
+    }
+
+    private void saveHostsChunk(AhHostJpaController hostController, final List<MWHost> mwHosts)
+	    throws AttestationHubException {
+	Set<String> ids = new HashSet<>(mwHosts.size());
+	Set<String> hardwareUuids = new HashSet<>(mwHosts.size());
+	for (MWHost mwHost : mwHosts) {
+	    ids.add(mwHost.getHost().getId().toString());
+	    hardwareUuids.add(mwHost.getHost().getHardwareUuid().toString().toUpperCase());
+	}
+
+	// the existing hosts are looked up and updated in the transaction that
+	// writes them, so they are not merged back one by one
+	try {
+	    hostController.upsert(ids, hardwareUuids, new AhHostJpaController.HostChunkUpdate() {
+		@Override
+		public Collection<AhHost> apply(List<AhHost> existingHosts) {
+		    return applyHostsChunk(mwHosts, existingHosts);
+		}
+	    });
+	} catch (Exception e) {
+	    log.error("Error saving hosts", e);
+	    throw new AttestationHubException(e);
+	}
+    }
+
+    /**
+     * Updates the existing hosts of the chunk in place and returns the hosts
+     * to create.
+     */
+    private List<AhHost> applyHostsChunk(List<MWHost> mwHosts, List<AhHost> existingHosts) {
+	Map<String, AhHost> existingHostsById = new HashMap<>();
+	Map<String, List<AhHost>> existingHostsByHardwareUuid = new HashMap<>();
+	for (AhHost existingHost : existingHosts) {
+	    existingHostsById.put(existingHost.getId(), existingHost);
+	    if (existingHost.getHardwareUuid() == null) {
+		continue;
+	    }
+	    String hardwareUuid = existingHost.getHardwareUuid().toUpperCase();
+	    List<AhHost> hostsWithHardwareUuid = existingHostsByHardwareUuid.get(hardwareUuid);
+	    if (hostsWithHardwareUuid == null) {
+		hostsWithHardwareUuid = new ArrayList<>();
+		existingHostsByHardwareUuid.put(hardwareUuid, hostsWithHardwareUuid);
+	    }
+	    hostsWithHardwareUuid.add(existingHost);
+	}
+
+	List<AhHost> hostsToCreate = new ArrayList<>();
+	Set<String> editedHostIds = new HashSet<>();
+	for (MWHost mwHost : mwHosts) {
 	    Host host = mwHost.getHost();
 	    log.debug("Processing save for host ID : {} and name: {}", host.getId(), host.getHostName());
-	    AhHost ahHost = hostController.findAhHost(host.getId().toString());
+	    AhHost ahHost = existingHostsById.get(host.getId().toString());
 	    log.debug("Does the host already exist in Attestation Hub DB ? {}", ahHost != null);
 
 	    // In a case where a host was added previously, but later was
@@ -467,50 +519,31 @@ public class AttestationHubServiceImpl implements AttestationHubService {
 	    // the UUID would be different, but the hardware uuid would be the
 	    // same. In this case
 	    // we would want to disable the earlier record
-	    if (ahHost != null) {
-		ahHostExists = true;
-	    } else {
-		List<AhHost> findHostsByHardwareUuid = hostController.findHostsByHardwareUuid(host.getHardwareUuid().toString().toUpperCase());
+	    if (ahHost == null) {
+		List<AhHost> findHostsByHardwareUuid = existingHostsByHardwareUuid
+			.get(host.getHardwareUuid().toString().toUpperCase());
 		if (findHostsByHardwareUuid != null) {
 		    // In this case we want to disable all these records
 		    for (AhHost ahHost2 : findHostsByHardwareUuid) {
-		    	if(ahHost2.getDeleted() != null && ahHost2.getDeleted()){
-		    		continue;
-				}
+			if (ahHost2.getDeleted() != null && ahHost2.getDeleted()) {
+			    continue;
+			}
 			ahHost2.setDeleted(true);
 			ahHost2.setModifiedDate(new Date());
-			try {
-			    hostController.edit(ahHost2);
-			} catch (PreexistingEntityException e) {
-			    log.error("Error updating host {} since host already exists", ahHost2.getId(), e);
-			    throw new AttestationHubException(e);
-			} catch (Exception e) {
-			    log.error("Error updating host", e);
-			    throw new AttestationHubException(e);
-			}
+			editedHostIds.add(ahHost2.getId());
 		    }
 		}
-	    }
-	    ahHost = HostMapper.mapHostToAhHost(mwHost, ahHost, "admin");
-	    ahHost.setDeleted(false);
-
-	    try {
-		if (ahHostExists) {
-		    hostController.edit(ahHost);
-		    log.debug("Edited the host: {} in attestation DB ", ahHost.getId());
-		    savedAhHostIdList.add(ahHost.getId());
-		} else {
-		    hostController.create(ahHost);
-		    log.debug("Added host to attestation DB with ID: {}", ahHost.getId());
-		}
-	    } catch (PreexistingEntityException e) {
-		log.error("Error creating host {} since host already exists", ahHost.getId(), e);
-		throw new AttestationHubException(e);
-	    } catch (Exception e) {
-		log.error("Error creating host", e);
-		throw new AttestationHubException(e);
+		ahHost = HostMapper.mapHostToAhHost(mwHost, null, "admin");
+		ahHost.setDeleted(false);
+		hostsToCreate.add(ahHost);
+	    } else {
+		HostMapper.mapHostToAhHost(mwHost, ahHost, "admin");
+		ahHost.setDeleted(false);
+		editedHostIds.add(ahHost.getId());
 	    }
 	}
+	log.debug("Adding {} hosts and editing {} hosts in attestation DB", hostsToCreate.size(), editedHostIds.size());
+	return hostsToCreate;
     }
 
     @Override
@@ -671,21 +704,11 @@ public class AttestationHubServiceImpl implements AttestationHubService {
 	public void markExpiredHostsAsDeleted() {
 		PersistenceServiceFactory persistenceServiceFactory = PersistenceServiceFactory.getInstance();
 		AhHostJpaController ahHostJpaController = persistenceServiceFactory.getHostController();
-		List<AhHost> ahHosts = ahHostJpaController.findAhHostEntities();
-		DateTimeFormatter formatter = ISODateTimeFormat.dateTime();
-		for (AhHost ahHost : ahHosts) {
-			if (DateTime.now().isAfter(formatter.parseDateTime(ahHost.getValidTo()))) {
-				ahHost.setDeleted(true);
-				try {
-					ahHostJpaController.edit(ahHost);
-				} catch (NonexistentEntityException e) {
-					String msg = "Invalid host id: " + ahHost.getId();
-					log.error(msg, e);
-				} catch (Exception e) {
-					String msg = "Error updating host as deleted: " + ahHost.getId();
-					log.error(msg, e);
-				}
-			}
+		try {
+			int updated = ahHostJpaController.markExpiredHostsAsDeleted(new Date());
+			log.info("Marked {} hosts with expired reports as deleted", updated);
+		} catch (Exception e) {
+			log.error("Error updating hosts with expired reports as deleted", e);
 		}
 	}
 
@@ -694,21 +717,11 @@ public class AttestationHubServiceImpl implements AttestationHubService {
 	public void markExpiredHostsAsUntrusted() {
 		PersistenceServiceFactory persistenceServiceFactory = PersistenceServiceFactory.getInstance();
 		AhHostJpaController ahHostJpaController = persistenceServiceFactory.getHostController();
-		List<AhHost> ahHosts = ahHostJpaController.findAhHostEntities();
-		DateTimeFormatter formatter = ISODateTimeFormat.dateTime();
-		for (AhHost ahHost : ahHosts) {
-			if (DateTime.now().isAfter(formatter.parseDateTime(ahHost.getValidTo()))) {
-				ahHost.setTrusted(false);
-				try {
-					ahHostJpaController.edit(ahHost);
-				} catch (NonexistentEntityException e) {
-					String msg = "Invalid host id: " + ahHost.getId();
-					log.error(msg, e);
-				} catch (Exception e) {
-					String msg = "Error updating host as untrusted: " + ahHost.getId();
-					log.error(msg, e);
-				}
-			}
+		try {
+			int updated = ahHostJpaController.markExpiredHostsAsUntrusted(new Date());
+			log.info("Marked {} hosts with expired reports as untrusted", updated);
+		} catch (Exception e) {
+			log.error("Error updating hosts with expired reports as untrusted", e);
 		}
 	}
 
@@ -744,4 +757,28 @@ public class AttestationHubServiceImpl implements AttestationHubService {
 			log.error(msg, e);
 		}
 	}
+
+	@Override
+	public void markHostsAsDeleted(Collection<String> hostIds) throws AttestationHubException {
+		AhHostJpaController ahHostJpaController = PersistenceServiceFactory.getInstance().getHostController();
+		try {
+			int updated = ahHostJpaController.markHostsAsDeleted(hostIds);
+			log.debug("Marked {} hosts as deleted", updated);
+		} catch (Exception e) {
+			log.error("Error updating hosts as deleted", e);
+			throw new AttestationHubException(e);
+		}
+	}
+
+	@Override
+	public void markHostsAsUntrusted(Collection<String> hostIds) throws AttestationHubException {
+		AhHostJpaController ahHostJpaController = PersistenceServiceFactory.getInstance().getHostController();
+		try {
+			int updated = ahHostJpaController.markHostsAsUntrusted(hostIds);
+			log.debug("Marked {} hosts as untrusted", updated);
+		} catch (Exception e) {
+			log.error("Error updating hosts as untrusted", e);
+			throw new AttestationHubException(e);
+		}
+	}
 }
@@ -411,7 +411,7 @@ case "$1" in
     fi
     ;;
   erase-data)
-    db_tables=(ah_host ah_mapping ah_tenant ah_tenant_plugin_credential)
+    db_tables=(ah_host ah_mapping ah_tenant ah_tenant_plugin_credential ah_publish_watermark)
     erase_data ${db_tables[*]}
     ;;
   uninstall)